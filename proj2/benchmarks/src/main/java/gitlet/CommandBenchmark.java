@@ -0,0 +1,189 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Gitlet commands, run through Main.run as the daemon runs
+ *  them, on a synthetic repository of FILES files (in directories of 100)
+ *  with a history of HISTORY commits.
+ *
+ *  Besides master, the repository has a branch "other" that changes 10
+ *  files, and master's head changes 10 others, so that checkout switches
+ *  between near-identical commits and merge merges cleanly.  Since
+ *  Repository fixes its working directory when it is loaded, each
+ *  benchmark must run in a fresh JVM (a fork) of its own; the repository
+ *  is built in a temporary directory when the fork starts.  The
+ *  commands' output is discarded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandBenchmark {
+
+    /** Files changed by each side of the merge. */
+    private static final int CHANGED = 10;
+
+    /** A synthetic repository, as described above. */
+    @State(Scope.Benchmark)
+    public static class Repo {
+        /** The number of tracked files. */
+        @Param({ "1000", "10000" })
+        public int files;
+
+        /** The number of commits on master. */
+        @Param({ "100" })
+        public int history;
+
+        /** Create the repository. */
+        @Setup(Level.Trial)
+        public void build() throws IOException {
+            _dir = Files.createTempDirectory("gitlet-bench");
+            System.setProperty("user.dir", _dir.toString());
+            if (!Repository.CWD.equals(_dir.toFile())) {
+                throw new IllegalStateException(
+                    "the repository must be built in a fresh fork");
+            }
+            _stdout = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+            gitlet("init");
+            for (int i = 0; i < files; i += 1) {
+                change(i);
+            }
+            gitlet("add", ".");
+            gitlet("commit", "base");
+            for (int c = 1; c < history - 1; c += 1) {
+                commitChange(c % files);
+            }
+            gitlet("branch", "other");
+            gitlet("checkout", "other");
+            for (int i = 0; i < CHANGED; i += 1) {
+                change(i);
+                gitlet("add", name(i));
+            }
+            gitlet("commit", "other");
+            gitlet("checkout", "master");
+            for (int i = 0; i < CHANGED; i += 1) {
+                change(files - 1 - i);
+                gitlet("add", name(files - 1 - i));
+            }
+            gitlet("commit", "ours");
+            head = Utils.readContentsAsString(
+                Repository.branchFile("master"));
+        }
+
+        /** Delete the repository. */
+        @TearDown(Level.Trial)
+        public void destroy() throws IOException {
+            System.setOut(_stdout);
+            try (Stream<Path> paths = Files.walk(_dir)) {
+                paths.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile).forEach(File::delete);
+            }
+        }
+
+        /** Give file number K new contents. */
+        void change(int k) {
+            File file = Repository.workingFile(name(k));
+            file.getParentFile().mkdirs();
+            _version += 1;
+            Utils.writeContents(file, String.format("file %d%nversion %d%n",
+                                                    k, _version));
+        }
+
+        /** Give file number K new contents and commit them. */
+        void commitChange(int k) {
+            change(k);
+            gitlet("add", name(k));
+            gitlet("commit", "change " + _version);
+        }
+
+        /** The UID of master's head once the repository is built. */
+        String head;
+        /** The directory holding the repository. */
+        private Path _dir;
+        /** The standard output while the repository exists. */
+        private PrintStream _stdout;
+        /** The number of changes made. */
+        private int _version;
+    }
+
+    /** A synthetic repository whose master is reset to its original head
+     *  before each invocation, so that each merge does the same work. */
+    @State(Scope.Benchmark)
+    public static class MergeRepo extends Repo {
+        /** Undo the last merge. */
+        @Setup(Level.Invocation)
+        public void undoMerge() {
+            gitlet("reset", head);
+        }
+    }
+
+    /** Returns the name of file number K. */
+    static String name(int k) {
+        return String.format("d%03d/f%05d.txt", k / 100, k);
+    }
+
+    /** Execute the Gitlet command ARGS. */
+    static void gitlet(String... args) {
+        Main.run(args);
+    }
+
+    /** Print the status. */
+    @Benchmark
+    public void status(Repo repo) {
+        gitlet("status");
+    }
+
+    /** Print master's history. */
+    @Benchmark
+    public void log(Repo repo) {
+        gitlet("log");
+    }
+
+    /** Change, add, and commit one file. */
+    @Benchmark
+    public void addCommit(Repo repo) {
+        repo.commitChange(repo._version % repo.files);
+    }
+
+    /** Switch to the other branch or back. */
+    @Benchmark
+    public void checkout(Repo repo) {
+        _onOther = !_onOther;
+        gitlet("checkout", _onOther ? "other" : "master");
+    }
+
+    /** Merge the other branch into master. */
+    @Benchmark
+    public void merge(MergeRepo repo) {
+        gitlet("merge", "other");
+    }
+
+    /** True iff the last checkout was of the other branch. */
+    private boolean _onOther;
+}
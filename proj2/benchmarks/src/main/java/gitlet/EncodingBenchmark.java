@@ -0,0 +1,79 @@
+package gitlet;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the binary encodings of commits, and of the trees that
+ *  hold their snapshots, for directories of ENTRIES entries. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+    /** The number of entries in the tree. */
+    @Param({ "10", "1000" })
+    public int entries;
+
+    /** Create a commit and a tree, and encode them. */
+    @Setup(Level.Trial)
+    public void setUp() {
+        _tree = new Tree();
+        for (int i = 0; i < entries; i += 1) {
+            _tree.put(String.format("file%05d.txt", i), Tree.BLOB,
+                      ObjectId.fromHex(Utils.sha1("contents " + i)));
+        }
+        _commit = new Commit("A commit message of typical length.",
+                             System.currentTimeMillis(),
+                             List.of(Utils.sha1("parent")),
+                             ObjectId.fromHex(_tree.id()));
+        _encodedCommit = _commit.encode();
+        _encodedTree = _tree.encode();
+    }
+
+    /** Returns the encoding of the commit. */
+    @Benchmark
+    public byte[] encodeCommit() {
+        return _commit.encode();
+    }
+
+    /** Returns the decoded commit. */
+    @Benchmark
+    public Commit decodeCommit() {
+        return Commit.decode(_encodedCommit);
+    }
+
+    /** Returns the encoding of the tree. */
+    @Benchmark
+    public byte[] encodeTree() {
+        return _tree.encode();
+    }
+
+    /** Returns the decoded tree. */
+    @Benchmark
+    public Tree decodeTree() {
+        return Tree.decode(_encodedTree);
+    }
+
+    /** The commit and tree encoded. */
+    private Commit _commit;
+    /** The tree encoded. */
+    private Tree _tree;
+    /** Their encodings. */
+    private byte[] _encodedCommit, _encodedTree;
+}
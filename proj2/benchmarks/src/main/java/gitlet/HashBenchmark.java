@@ -0,0 +1,68 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of Utils.sha1 on byte arrays and on files of SIZE bytes. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+    /** The number of bytes hashed. */
+    @Param({ "64", "65536", "4194304" })
+    public int size;
+
+    /** Create the random contents to be hashed, in memory and in a
+     *  file. */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        _contents = new byte[size];
+        new Random(size).nextBytes(_contents);
+        _file = File.createTempFile("gitlet-hash", null);
+        Files.write(_file.toPath(), _contents);
+    }
+
+    /** Remove the file. */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        _file.delete();
+    }
+
+    /** Returns the hash of the contents. */
+    @Benchmark
+    public String sha1Bytes() {
+        return Utils.sha1((Object) _contents);
+    }
+
+    /** Returns the hash of the file. */
+    @Benchmark
+    public String sha1File() {
+        return Utils.sha1(_file);
+    }
+
+    /** The contents hashed. */
+    private byte[] _contents;
+    /** A file holding _contents. */
+    private File _file;
+}
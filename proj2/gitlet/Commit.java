@@ -1,26 +1,239 @@
 package gitlet;
 
-// TODO: any imports you need here
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
-import java.util.Date; // TODO: You'll likely use this in this class
+import static gitlet.Utils.*;
 
-/** Represents a gitlet commit object.
- *  TODO: It's a good idea to give a description here of what else this Class
- *  does at a high level.
+/** Represents a gitlet commit object: a snapshot of the tracked files,
+ *  given as the UID of the Tree for the working directory, together with
+ *  a log message, a timestamp, and the UIDs of its parent commits (none
+ *  for the initial commit, two for a merge).
  *
- *  @author TODO
+ *  Commits are stored in a compact, versioned binary encoding rather than
+ *  through Java serialization.  The encoding is written and read field by
+ *  field through DataOutput and DataInput, with no reflection or class
+ *  descriptors, and a commit's UID is the SHA-1 hash of its encoding.
+ *  The layout of version 2 is
+ *
+ *      MAGIC (4 bytes)           "GLC" followed by the version number
+ *      timestamp (8 bytes)       milliseconds since the epoch
+ *      parent count (1 byte)     followed by that many 20-byte UIDs
+ *      message                   4-byte length, then UTF-8 bytes
+ *      tree UID (20 bytes)
+ *
+ *  Version 1 recorded the whole snapshot, in place of the tree UID, as a
+ *  4-byte count of files followed by each file's name (as for
+ *  DataOutput.writeUTF) and blob UID; since trees are shared between
+ *  commits, version 2 makes the size of a commit independent of the
+ *  number of files.  Version 1 commits are still read: the tree for such
+ *  a commit is built from its list of files when it is decoded (see
+ *  legacyTree), and it is encoded in version 1 as before, so its UID is
+ *  unchanged.
  */
-public class Commit {
-    /**
-     * TODO: add instance variables here.
-     *
-     * List all instance variables of the Commit class here with a useful
-     * comment above them describing what that variable represents and how that
-     * variable is used. We've provided one example for `message`.
-     */
+public class Commit implements Dumpable {
+
+    /** Current version of the binary encoding. */
+    static final int VERSION = 2;
+
+    /** The leading bytes of every encoded commit. */
+    private static final byte[] MAGIC = { 'G', 'L', 'C', VERSION };
+
+    /** The message of the initial commit. */
+    static final String INITIAL_MESSAGE = "initial commit";
+
+    /** A commit with log message MESSAGE made at TIMESTAMP (milliseconds
+     *  since the epoch) whose parents have the UIDs in PARENTS and whose
+     *  snapshot is the tree with UID TREE. */
+    Commit(String message, long timestamp, List<String> parents,
+           ObjectId tree) {
+        this.message = message;
+        this.timestamp = timestamp;
+        this.parents = Collections.unmodifiableList(new ArrayList<>(parents));
+        this.tree = tree;
+    }
+
+    /** Returns the initial commit that every repository starts with. */
+    static Commit initial() {
+        return new Commit(INITIAL_MESSAGE, 0, Collections.emptyList(),
+                          ObjectId.fromHex(Tree.EMPTY.id()));
+    }
+
+    /** Returns my log message. */
+    String message() {
+        return message;
+    }
+
+    /** Returns my timestamp in milliseconds since the epoch. */
+    long timestamp() {
+        return timestamp;
+    }
+
+    /** Returns my timestamp as a Date. */
+    Date date() {
+        return new Date(timestamp);
+    }
+
+    /** Returns the UIDs of my parents, first parent first. */
+    List<String> parents() {
+        return parents;
+    }
+
+    /** Returns true iff I am a merge commit. */
+    boolean isMerge() {
+        return parents.size() > 1;
+    }
+
+    /** Returns the UID of my snapshot's root tree. */
+    ObjectId tree() {
+        return tree;
+    }
+
+    /** Returns my root tree if I was decoded from a version 1 encoding,
+     *  which names no stored tree, and null otherwise.  It must be stored
+     *  before tree() can be read. */
+    Tree legacyTree() {
+        return _legacyTree;
+    }
+
+    /** Returns my binary encoding. */
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out);
+        } catch (IOException excp) {
+            throw error("Internal error serializing commit.");
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Write my binary encoding to OUT. */
+    void write(DataOutput out) throws IOException {
+        if (_legacyTree == null) {
+            out.write(MAGIC);
+        } else {
+            out.write(MAGIC, 0, MAGIC.length - 1);
+            out.writeByte(1);
+        }
+        out.writeLong(timestamp);
+        out.writeByte(parents.size());
+        for (String parent : parents) {
+            writeUid(out, parent);
+        }
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(text.length);
+        out.write(text);
+        if (_legacyTree == null) {
+            tree.write(out);
+            return;
+        }
+        out.writeInt(_legacyTree.entries().size());
+        for (Map.Entry<String, Tree.Entry> entry
+                 : _legacyTree.entries().entrySet()) {
+            out.writeUTF(entry.getKey());
+            entry.getValue().id.write(out);
+        }
+    }
+
+    /** Returns my UID: the SHA-1 hash of my encoding. */
+    String id() {
+        if (_id == null) {
+            _id = sha1((Object) encode());
+        }
+        return _id;
+    }
+
+    /** Returns true iff BYTES starts like an encoded commit. */
+    static boolean isEncoded(byte[] bytes) {
+        if (bytes.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length - 1; i += 1) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the commit encoded in BYTES. */
+    static Commit decode(byte[] bytes) {
+        try {
+            return read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException("corrupt commit");
+        }
+    }
+
+    /** Read and return a commit written by write from IN. */
+    static Commit read(DataInput in) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!isEncoded(magic)) {
+            throw new IOException("not a commit");
+        }
+        int version = magic[MAGIC.length - 1];
+        if (version != 1 && version != VERSION) {
+            throw new IOException("unknown commit version " + version);
+        }
+        long timestamp = in.readLong();
+        int numParents = in.readUnsignedByte();
+        List<String> parents = new ArrayList<>(numParents);
+        for (int i = 0; i < numParents; i += 1) {
+            parents.add(readUid(in));
+        }
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        String message = new String(text, StandardCharsets.UTF_8);
+        if (version == VERSION) {
+            return new Commit(message, timestamp, parents, ObjectId.read(in));
+        }
+        Tree legacy = new Tree();
+        for (int n = in.readInt(); n > 0; n -= 1) {
+            String name = in.readUTF();
+            legacy.put(name, Tree.BLOB, ObjectId.read(in));
+        }
+        Commit result = new Commit(message, timestamp, parents,
+                                   ObjectId.fromHex(legacy.id()));
+        result._legacyTree = legacy;
+        return result;
+    }
+
+    @Override
+    public void dump() {
+        System.out.printf("message: %s%ntimestamp: %s%nparents: %s%n"
+                          + "tree: %s%n",
+                          message, date(), parents, tree);
+    }
 
     /** The message of this Commit. */
-    private String message;
+    private final String message;
+
+    /** The time at which this Commit was made, in milliseconds since the
+     *  epoch.  The initial commit has timestamp 0. */
+    private final long timestamp;
+
+    /** The UIDs of this Commit's parents, first parent first: empty for the
+     *  initial commit and of length two for a merge. */
+    private final List<String> parents;
+
+    /** The UID of the root tree of this Commit's snapshot. */
+    private final ObjectId tree;
+
+    /** My root tree, if I was decoded from a version 1 encoding. */
+    private transient Tree _legacyTree;
 
-    /* TODO: fill in the rest of this class. */
+    /** My UID, computed when first needed. */
+    private transient String _id;
 }
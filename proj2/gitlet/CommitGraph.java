@@ -0,0 +1,422 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import static gitlet.Utils.*;
+
+/** The commit graph: the shape of the history, kept apart from the commits
+ *  themselves so that ancestry questions can be answered without reading
+ *  or decoding any commit.
+ *
+ *  The graph file holds MAGIC followed by one fixed-width record per
+ *  commit, in the order the commits were added.  Since a commit is always
+ *  added after its parents, parents are referred to by record number.  A
+ *  record is
+ *
+ *      UID (20 bytes)
+ *      first parent (4 bytes)     record number, or NONE
+ *      second parent (4 bytes)    record number, or NONE
+ *      generation (4 bytes)       1 for a root; otherwise one more than
+ *                                 the greatest generation of its parents
+ *      timestamp (8 bytes)
+ *
+ *  The file is memory-mapped.  Records added since it was last written
+ *  are held in memory until flush appends them and flushes the file to
+ *  disk, which the owner of the graph does only once the commits they
+ *  describe are on disk themselves (see Transaction.afterSync), so the
+ *  file never refers to a commit that a crash could lose.  A partial
+ *  record left at the end by an interrupted append is ignored, and
+ *  overwritten by the next one.  A rebuilt graph replaces the file
+ *  atomically (see Transaction.replace).  A commit's generation is
+ *  greater than those of all its ancestors, which lets walks stop early
+ *  and makes merge-base computation a single pass in order of decreasing
+ *  generation.
+ */
+class CommitGraph {
+
+    /** Leading bytes of a graph file. */
+    private static final byte[] MAGIC = { 'G', 'L', 'G', 1 };
+
+    /** Length of a record in bytes. */
+    private static final int RECORD = UID_BYTES + 4 + 4 + 4 + 8;
+
+    /** Offsets of the fields of a record. */
+    private static final int PARENT1 = UID_BYTES, PARENT2 = PARENT1 + 4,
+        GENERATION = PARENT2 + 4, TIMESTAMP = GENERATION + 4;
+
+    /** Record number denoting a missing parent. */
+    static final int NONE = -1;
+
+    /** The graph kept in FILE. */
+    CommitGraph(File file) {
+        _file = file;
+    }
+
+    /** Returns true iff my file exists. */
+    boolean exists() {
+        return _file.isFile();
+    }
+
+    /** Returns the number of commits in the graph. */
+    int size() {
+        return stored() + _pending.position() / RECORD;
+    }
+
+    /** Returns the record number of the commit with UID ID, or NONE if it
+     *  is not in the graph. */
+    int indexOf(String id) {
+        return indexOf(ObjectId.fromHex(id));
+    }
+
+    /** Returns the record number of the commit with UID ID, or NONE if it
+     *  is not in the graph. */
+    int indexOf(ObjectId id) {
+        Integer k = ids().get(id);
+        return k == null ? NONE : k;
+    }
+
+    /** Returns true iff the commit with UID ID is in the graph. */
+    boolean contains(String id) {
+        return indexOf(id) != NONE;
+    }
+
+    /** Returns the UID of commit K. */
+    String id(int k) {
+        return objectId(k).toString();
+    }
+
+    /** Returns the UID of commit K as an ObjectId. */
+    ObjectId objectId(int k) {
+        return ObjectId.get(buffer(k), offset(k));
+    }
+
+    /** Returns the record number of the first parent of commit K, or
+     *  NONE. */
+    int parent1(int k) {
+        return buffer(k).getInt(offset(k) + PARENT1);
+    }
+
+    /** Returns the record number of the second parent of commit K, or
+     *  NONE. */
+    int parent2(int k) {
+        return buffer(k).getInt(offset(k) + PARENT2);
+    }
+
+    /** Returns the generation number of commit K. */
+    int generation(int k) {
+        return buffer(k).getInt(offset(k) + GENERATION);
+    }
+
+    /** Returns the timestamp of commit K. */
+    long timestamp(int k) {
+        return buffer(k).getLong(offset(k) + TIMESTAMP);
+    }
+
+    /** Returns the record numbers of commit K and of its ancestors along
+     *  first parents, newest first.  They are produced one at a time, in
+     *  constant space. */
+    Iterable<Integer> firstParents(int k) {
+        return () -> new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return _next != NONE;
+            }
+
+            @Override
+            public Integer next() {
+                if (_next == NONE) {
+                    throw new NoSuchElementException();
+                }
+                int result = _next;
+                _next = parent1(result);
+                return result;
+            }
+
+            /** The next record number to produce. */
+            private int _next = k;
+        };
+    }
+
+    /** Returns the record numbers of all commits, most recently added
+     *  first.  They are produced one at a time, in constant space. */
+    Iterable<Integer> newestFirst() {
+        return () -> new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return _next >= 0;
+            }
+
+            @Override
+            public Integer next() {
+                if (_next < 0) {
+                    throw new NoSuchElementException();
+                }
+                _next -= 1;
+                return _next + 1;
+            }
+
+            /** The next record number to produce. */
+            private int _next = size() - 1;
+        };
+    }
+
+    /** Add COMMIT, whose UID is ID and whose parents must already be in
+     *  the graph, unless it is there already. */
+    void add(String id, Commit commit) {
+        add(id, commit, false);
+    }
+
+    /** Add COMMIT, whose UID is ID, unless it is in the graph already.  If
+     *  GRAFT, COMMIT is recorded as a root, as at the boundary of a shallow
+     *  history (see Repository.fetch), and its parents need not be present;
+     *  otherwise they must already be in the graph.  COMMIT is not written
+     *  to my file until the next flush. */
+    void add(String id, Commit commit, boolean graft) {
+        ObjectId oid = ObjectId.fromHex(id);
+        if (indexOf(oid) != NONE) {
+            return;
+        }
+        int[] parents = { NONE, NONE };
+        int generation = 1;
+        for (int i = 0; i < (graft ? 0 : commit.parents().size()); i += 1) {
+            parents[i] = indexOf(commit.parents().get(i));
+            if (parents[i] == NONE) {
+                throw new IllegalArgumentException("parent not in graph");
+            }
+            generation = Math.max(generation, generation(parents[i]) + 1);
+        }
+        int k = size();
+        if (_pending.remaining() < RECORD) {
+            ByteBuffer larger =
+                ByteBuffer.allocate(2 * _pending.capacity() + RECORD);
+            _pending.flip();
+            _pending = larger.put(_pending);
+        }
+        oid.put(_pending);
+        _pending.putInt(parents[0]).putInt(parents[1]).putInt(generation);
+        _pending.putLong(commit.timestamp());
+        ids().put(oid, k);
+    }
+
+    /** Append the commits added since my file was last written to it, and
+     *  flush it to disk. */
+    void flush() {
+        if (_pending.position() == 0) {
+            return;
+        }
+        boolean created = !_file.isFile();
+        try (FileChannel out =
+                 FileChannel.open(_file.toPath(), StandardOpenOption.CREATE,
+                                  StandardOpenOption.WRITE)) {
+            if (out.size() < MAGIC.length) {
+                out.write(ByteBuffer.wrap(MAGIC), 0);
+            }
+            long end = MAGIC.length + (long) stored() * RECORD;
+            out.truncate(end);
+            ByteBuffer records = _pending.flip();
+            while (records.hasRemaining()) {
+                out.write(records, end + records.position());
+            }
+            out.force(true);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (created) {
+            Transaction.forceDirectory(_file.getParentFile());
+        }
+        _pending.clear();
+        _map = null;
+    }
+
+    /** Rebuild my file from the commits in STORE, replacing any existing
+     *  file.  Commits with a parent missing from STORE are grafted. */
+    void rebuild(ObjectStore store) {
+        HashMap<String, Commit> commits = new HashMap<>();
+        for (String id : store.ids()) {
+            commits.put(id, Commit.decode(store.read(id)));
+        }
+        _map = ByteBuffer.wrap(MAGIC.clone());
+        _ids = null;
+        _pending.clear();
+        for (String id : commits.keySet()) {
+            addWithAncestors(id, commits);
+        }
+        byte[] records = new byte[_pending.position()];
+        _pending.get(0, records);
+        Transaction.replace(_file, MAGIC, records);
+        _pending.clear();
+        _map = null;
+    }
+
+    /** Add the commit with UID ID from COMMITS, after adding any of its
+     *  ancestors not already in the graph.  A commit with a parent missing
+     *  from COMMITS is grafted. */
+    private void addWithAncestors(String id, HashMap<String, Commit> commits) {
+        ArrayList<String> stack = new ArrayList<>();
+        stack.add(id);
+        while (!stack.isEmpty()) {
+            String top = stack.get(stack.size() - 1);
+            if (contains(top)) {
+                stack.remove(stack.size() - 1);
+                continue;
+            }
+            boolean ready = true, graft = false;
+            for (String parent : commits.get(top).parents()) {
+                if (!commits.containsKey(parent)) {
+                    graft = true;
+                } else if (!contains(parent)) {
+                    stack.add(parent);
+                    ready = false;
+                }
+            }
+            if (graft || ready) {
+                add(top, commits.get(top), graft);
+                stack.remove(stack.size() - 1);
+            }
+        }
+    }
+
+    /** Returns true iff the commit with UID ANCESTOR is DESCENDANT or one of
+     *  its ancestors. */
+    boolean isAncestor(String ancestor, String descendant) {
+        int a = indexOf(ancestor), d = indexOf(descendant);
+        if (a == NONE || d == NONE) {
+            return false;
+        }
+        int minGeneration = generation(a);
+        boolean[] seen = new boolean[size()];
+        ArrayList<Integer> work = new ArrayList<>(List.of(d));
+        while (!work.isEmpty()) {
+            int k = work.remove(work.size() - 1);
+            if (k == a) {
+                return true;
+            }
+            if (seen[k] || generation(k) <= minGeneration) {
+                continue;
+            }
+            seen[k] = true;
+            for (int p : new int[] { parent1(k), parent2(k) }) {
+                if (p != NONE) {
+                    work.add(p);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Returns the UID of a latest common ancestor of the commits with
+     *  UIDs A and B: a common ancestor that is not an ancestor of any other
+     *  common ancestor.  Returns null if they have none. */
+    String mergeBase(String a, String b) {
+        final int fromA = 1, fromB = 2;
+        int ka = indexOf(a), kb = indexOf(b);
+        if (ka == NONE || kb == NONE) {
+            throw new IllegalArgumentException("commit not in graph");
+        }
+        byte[] flags = new byte[size()];
+        PriorityQueue<Integer> queue =
+            new PriorityQueue<>((x, y) -> generation(y) - generation(x));
+        flags[ka] |= fromA;
+        flags[kb] |= fromB;
+        queue.add(ka);
+        if (kb != ka) {
+            queue.add(kb);
+        }
+        while (!queue.isEmpty()) {
+            int k = queue.poll();
+            if (flags[k] == (fromA | fromB)) {
+                return id(k);
+            }
+            for (int p : new int[] { parent1(k), parent2(k) }) {
+                if (p != NONE && (flags[p] | flags[k]) != flags[p]) {
+                    if (flags[p] == 0) {
+                        queue.add(p);
+                    }
+                    flags[p] |= flags[k];
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Returns the number of commits in my file.  The file is mapped
+     *  whole, so map() ensures that its length, and so this number, fits
+     *  in an int. */
+    private int stored() {
+        return (map().capacity() - MAGIC.length) / RECORD;
+    }
+
+    /** Returns the buffer holding record K: my mapped file, or the records
+     *  not yet written to it. */
+    private ByteBuffer buffer(int k) {
+        return k < stored() ? map() : _pending;
+    }
+
+    /** Returns the position of record K in buffer(K). */
+    private int offset(int k) {
+        int n = stored();
+        return k < n ? MAGIC.length + k * RECORD : (k - n) * RECORD;
+    }
+
+    /** Returns my mapped file, mapping it if needed. */
+    private ByteBuffer map() {
+        if (_map == null) {
+            if (!_file.isFile()) {
+                _map = ByteBuffer.wrap(MAGIC.clone());
+                return _map;
+            }
+            try (FileChannel in =
+                     FileChannel.open(_file.toPath(),
+                                      StandardOpenOption.READ)) {
+                long size = in.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("commit graph too "
+                                                       + "large");
+                }
+                _map = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            byte[] magic = new byte[MAGIC.length];
+            _map.get(0, magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IllegalArgumentException("corrupt commit graph");
+            }
+        }
+        return _map;
+    }
+
+    /** Returns the map from UIDs to record numbers, building it from my
+     *  file when first needed.  No UID is formatted in doing so. */
+    private HashMap<ObjectId, Integer> ids() {
+        if (_ids == null) {
+            int n = size();
+            _ids = new HashMap<>(n + n / 3 + 1);
+            for (int k = n - 1; k >= 0; k -= 1) {
+                _ids.put(objectId(k), k);
+            }
+        }
+        return _ids;
+    }
+
+    /** The file holding the graph. */
+    private final File _file;
+    /** My file, mapped, or null if it must be (re)mapped. */
+    private ByteBuffer _map;
+    /** Map from UIDs to record numbers, or null if not yet built. */
+    private HashMap<ObjectId, Integer> _ids;
+    /** The records added since my file was last written, up to its
+     *  position. */
+    private ByteBuffer _pending = ByteBuffer.allocate(16 * RECORD);
+}
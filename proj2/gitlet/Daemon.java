@@ -0,0 +1,217 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import static gitlet.Utils.*;
+
+/** A long-running server that executes Gitlet commands for the repository
+ *  in its working directory, so that a stream of commands pays for JVM
+ *  startup and class loading only once and finds the repository's caches
+ *  (the staging area, commit graph, UID index, and packs) already loaded.
+ *
+ *  The daemon is started with "java gitlet.Main daemon" and listens on the
+ *  Unix-domain socket .gitlet/daemon.sock.  While it runs, gitlet.Main acts
+ *  as a thin client: it sends its arguments to the daemon, copies the
+ *  output it gets back to the standard output, and exits with the status
+ *  it is given.  "java gitlet.Main daemon stop" stops the daemon.  If no
+ *  daemon answers, Main executes commands itself.  If the setting
+ *  daemon.watch is true, the daemon also runs a Watcher, which spares
+ *  status and add most of their examination of the working directory.
+ *
+ *  Commands are executed one at a time.  A request consists of the
+ *  client's working directory and the argument count and arguments (each
+ *  as for DataOutput.writeUTF).  A reply consists of chunks of output,
+ *  each an int length followed by that many bytes, then the int -1 and an
+ *  int exit status.
+ */
+class Daemon {
+
+    /** The socket on which the daemon listens. */
+    static final File SOCKET_FILE =
+        join(Repository.GITLET_DIR, "daemon.sock");
+
+    /** Execute ARGS in a running daemon, if there is one, copying its
+     *  output to the standard output.  Returns the exit status of the
+     *  command, or -1 if there is no daemon to run it.  Once the request
+     *  has been sent, the daemon may have run the command, so a failure
+     *  after that is reported, with status 1, rather than returning -1 and
+     *  letting the caller run the command a second time. */
+    static int forward(String[] args) {
+        if (!SOCKET_FILE.exists()
+            || (args.length == 1 && args[0].equals("daemon"))) {
+            return -1;
+        }
+        SocketChannel connection;
+        try {
+            connection = connect();
+        } catch (IOException excp) {
+            return -1;
+        }
+        try (SocketChannel channel = connection) {
+            DataOutputStream request =
+                new DataOutputStream(new BufferedOutputStream(
+                    Channels.newOutputStream(channel)));
+            request.writeUTF(Repository.CWD.getPath());
+            request.writeInt(args.length);
+            for (String arg : args) {
+                request.writeUTF(arg);
+            }
+            request.flush();
+            DataInputStream reply =
+                new DataInputStream(Channels.newInputStream(channel));
+            byte[] buf = new byte[1 << 16];
+            for (int n = reply.readInt(); n >= 0; n = reply.readInt()) {
+                if (n > buf.length) {
+                    buf = new byte[n];
+                }
+                reply.readFully(buf, 0, n);
+                System.out.write(buf, 0, n);
+            }
+            System.out.flush();
+            return reply.readInt();
+        } catch (IOException excp) {
+            System.out.flush();
+            message("Lost connection to the Gitlet daemon.");
+            return 1;
+        }
+    }
+
+    /** Serve commands on SOCKET_FILE until told to stop. */
+    static void serve() {
+        if (SOCKET_FILE.exists()) {
+            if (answers()) {
+                throw error("A Gitlet daemon is already running.");
+            }
+            SOCKET_FILE.delete();
+        }
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(SOCKET_FILE.toPath()));
+            SOCKET_FILE.deleteOnExit();
+            if (Boolean.parseBoolean(Repository.configValue("daemon.watch"))) {
+                Watcher.start();
+            }
+            PrintStream stdout = System.out;
+            _running = true;
+            while (_running) {
+                try (SocketChannel client = server.accept()) {
+                    handle(client);
+                } catch (IOException excp) {
+                    /* The client went away; serve the next one. */
+                } finally {
+                    System.setOut(stdout);
+                }
+            }
+        } catch (IOException excp) {
+            throw error("Cannot start daemon: %s", excp.getMessage());
+        } finally {
+            Watcher.stop();
+            SOCKET_FILE.delete();
+        }
+    }
+
+    /** Stop serving after the current command. */
+    static void stop() {
+        if (!_running) {
+            throw error("No Gitlet daemon is running.");
+        }
+        _running = false;
+    }
+
+    /** Read one request from CLIENT, execute it, and send the reply. */
+    private static void handle(SocketChannel client) throws IOException {
+        DataInputStream request =
+            new DataInputStream(Channels.newInputStream(client));
+        String cwd = request.readUTF();
+        String[] args = new String[request.readInt()];
+        for (int i = 0; i < args.length; i += 1) {
+            args[i] = request.readUTF();
+        }
+        DataOutputStream reply =
+            new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(client)));
+        PrintStream out =
+            new PrintStream(new BufferedOutputStream(new Chunks(reply),
+                                                     1 << 16),
+                            false, StandardCharsets.UTF_8);
+        System.setOut(out);
+        int status = 0;
+        if (!new File(cwd).equals(Repository.CWD)) {
+            out.println("Daemon serves a different directory.");
+            status = 1;
+        } else {
+            try {
+                Main.run(args);
+            } catch (RuntimeException excp) {
+                Repository.abortTransaction();
+                out.println(excp);
+                status = 1;
+            }
+        }
+        out.flush();
+        reply.writeInt(-1);
+        reply.writeInt(status);
+        reply.flush();
+    }
+
+    /** Returns true iff a daemon accepts connections on SOCKET_FILE. */
+    private static boolean answers() {
+        try {
+            connect().close();
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Returns a channel connected to a running daemon. */
+    private static SocketChannel connect() throws IOException {
+        return SocketChannel.open(
+            UnixDomainSocketAddress.of(SOCKET_FILE.toPath()));
+    }
+
+    /** An OutputStream that sends what is written to it as the length-
+     *  prefixed chunks of a reply. */
+    private static class Chunks extends OutputStream {
+        /** A stream writing chunks to OUT. */
+        Chunks(DataOutputStream out) {
+            _out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > 0) {
+                _out.writeInt(len);
+                _out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _out.flush();
+        }
+
+        /** Where chunks are written. */
+        private final DataOutputStream _out;
+    }
+
+    /** True while the daemon is serving. */
+    private static boolean _running;
+}
@@ -0,0 +1,168 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/** Binary deltas between byte sequences.  A delta describes a TARGET
+ *  sequence as a series of instructions that either copy a range of
+ *  bytes out of a BASE sequence or insert literal bytes.  Its layout is
+ *
+ *      base length, target length      (as varints)
+ *      instructions, each either
+ *          COPY, offset, length        (copy BASE[offset .. offset+length))
+ *          INSERT, length, bytes       (insert the following bytes)
+ *
+ *  where varints are unsigned numbers written seven bits at a time, least
+ *  significant group first, with the high bit of each byte set on all but
+ *  the last.
+ *
+ *  Deltas are found by indexing the base in BLOCK-byte blocks and looking
+ *  up each position of the target in that index, extending every match as
+ *  far as it goes in both directions.
+ */
+class Delta {
+
+    /** Instruction copying a range of the base. */
+    private static final int COPY = 0;
+    /** Instruction inserting literal bytes. */
+    private static final int INSERT = 1;
+
+    /** Length of the blocks of the base that are indexed.  Matches
+     *  shorter than this are never found. */
+    private static final int BLOCK = 16;
+
+    /** Longest run of literal bytes in one INSERT. */
+    private static final int MAX_INSERT = 1 << 16;
+
+    /** Returns a delta that produces TARGET from BASE. */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out =
+            new ByteArrayOutputStream(target.length / 4 + 16);
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+
+        int[] heads = index(base);
+        int mask = heads.length - 1;
+        int pending = 0;
+        int i = 0;
+        while (i + BLOCK <= target.length) {
+            int candidate = heads[hash(target, i) & mask];
+            int len = candidate < 0 ? 0 : matchLength(base, candidate,
+                                                      target, i);
+            if (len < BLOCK) {
+                i += 1;
+                continue;
+            }
+            int back = 0;
+            while (back < i - pending && back < candidate
+                   && base[candidate - back - 1] == target[i - back - 1]) {
+                back += 1;
+            }
+            writeInsert(out, target, pending, i - back);
+            out.write(COPY);
+            writeVarint(out, candidate - back);
+            writeVarint(out, len + back);
+            i += len;
+            pending = i;
+        }
+        writeInsert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the result of applying DELTA, created by create, to BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = { 0 };
+        if (readVarint(delta, pos) != base.length) {
+            throw new IllegalArgumentException("delta applied to wrong base");
+        }
+        byte[] result = new byte[readVarint(delta, pos)];
+        int n = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]++];
+            if (op == COPY) {
+                int offset = readVarint(delta, pos),
+                    len = readVarint(delta, pos);
+                System.arraycopy(base, offset, result, n, len);
+                n += len;
+            } else if (op == INSERT) {
+                int len = readVarint(delta, pos);
+                System.arraycopy(delta, pos[0], result, n, len);
+                pos[0] += len;
+                n += len;
+            } else {
+                throw new IllegalArgumentException("corrupt delta");
+            }
+        }
+        if (n != result.length) {
+            throw new IllegalArgumentException("corrupt delta");
+        }
+        return result;
+    }
+
+    /** Returns a table, indexed by the hash of a BLOCK-byte block masked
+     *  by its length minus one, of the offset of the last block of BASE
+     *  with that hash, or -1 if there is none. */
+    private static int[] index(byte[] base) {
+        int blocks = Math.max(base.length / BLOCK, 1);
+        int size = Integer.highestOneBit(blocks) * 2;
+        int[] heads = new int[size];
+        Arrays.fill(heads, -1);
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            heads[hash(base, i) & (size - 1)] = i;
+        }
+        return heads;
+    }
+
+    /** Returns a hash of the BLOCK bytes of DATA starting at START. */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int k = start; k < start + BLOCK; k += 1) {
+            h = 31 * h + data[k];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** Returns the number of bytes that agree in BASE starting at B and
+     *  TARGET starting at T. */
+    private static int matchLength(byte[] base, int b, byte[] target, int t) {
+        int len = 0;
+        while (b + len < base.length && t + len < target.length
+               && base[b + len] == target[t + len]) {
+            len += 1;
+        }
+        return len;
+    }
+
+    /** Write instructions inserting TARGET[START .. END) to OUT. */
+    private static void writeInsert(ByteArrayOutputStream out, byte[] target,
+                                    int start, int end) {
+        while (start < end) {
+            int len = Math.min(end - start, MAX_INSERT);
+            out.write(INSERT);
+            writeVarint(out, len);
+            out.write(target, start, len);
+            start += len;
+        }
+    }
+
+    /** Write the non-negative number N to OUT as a varint. */
+    private static void writeVarint(ByteArrayOutputStream out, int n) {
+        while ((n & ~0x7f) != 0) {
+            out.write((n & 0x7f) | 0x80);
+            n >>>= 7;
+        }
+        out.write(n);
+    }
+
+    /** Read a varint from DATA at POS[0], advancing POS[0] past it. */
+    private static int readVarint(byte[] data, int[] pos) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = data[pos[0]++];
+            result |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Line-by-line differences between two texts.
+ *
+ *  Before comparing, every line of both texts is interned: lines with the
+ *  same bytes get the same small integer, found through a hash table keyed
+ *  on each line's hash.  The comparison itself then works only on arrays
+ *  of these integers, so it allocates nothing per line and compares lines
+ *  in constant time.
+ *
+ *  Differences are found with the histogram algorithm.  After trimming
+ *  lines common to the start and end of a region, it picks as an anchor
+ *  the longest run of matching lines that begins with a line occurring
+ *  fewest times in the region of the first text, and recurses on the
+ *  regions before and after the anchor.  Rare lines (such as unique
+ *  declarations) make good anchors, so the result tends to line up the
+ *  way a reader would, and in typical texts each level of recursion takes
+ *  linear time.  Regions whose common lines are all very frequent (blank
+ *  lines, lone braces) are passed to the Myers algorithm instead.
+ */
+class Diff {
+
+    /** Lines that occur more often than this in a region are not used as
+     *  anchors. */
+    private static final int MAX_CHAIN = 64;
+
+    /** The Myers algorithm gives up and reports one replaced region after
+     *  this many edits. */
+    private static final int MAX_EDITS = 1024;
+
+    /** Lines of unchanged context printed around each change. */
+    static final int CONTEXT = 3;
+
+    /** The lines of a text. */
+    static class Lines {
+        /** The lines of TEXT.  Every line but possibly the last ends with
+         *  a newline. */
+        Lines(byte[] text) {
+            _text = text;
+            int n = 0;
+            for (byte b : text) {
+                if (b == '\n') {
+                    n += 1;
+                }
+            }
+            if (text.length > 0 && text[text.length - 1] != '\n') {
+                n += 1;
+            }
+            _starts = new int[n + 1];
+            for (int i = 0, k = 1; i < text.length; i += 1) {
+                if (text[i] == '\n') {
+                    _starts[k] = i + 1;
+                    k += 1;
+                }
+            }
+            _starts[n] = text.length;
+        }
+
+        /** Returns the number of lines. */
+        int size() {
+            return _starts.length - 1;
+        }
+
+        /** Returns the position of the first byte of line K. */
+        int start(int k) {
+            return _starts[k];
+        }
+
+        /** Returns the position just past line K, excluding its
+         *  newline. */
+        int end(int k) {
+            int end = _starts[k + 1];
+            return end > _starts[k] && _text[end - 1] == '\n' ? end - 1 : end;
+        }
+
+        /** Returns true iff the text ends without a newline. */
+        boolean missingNewline() {
+            return _text.length > 0 && _text[_text.length - 1] != '\n';
+        }
+
+        /** Returns true iff the text looks binary, that is, holds a zero
+         *  byte among its first few thousand. */
+        boolean isBinary() {
+            for (int i = 0; i < Math.min(_text.length, 8000); i += 1) {
+                if (_text[i] == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Returns a hash of the contents of line K, including its
+         *  newline. */
+        int hash(int k) {
+            int h = 0;
+            for (int i = start(k), e = start(k + 1); i < e; i += 1) {
+                h = 31 * h + _text[i];
+            }
+            return h;
+        }
+
+        /** Returns true iff line K has the same contents as line J of
+         *  OTHER, including whether each ends with a newline. */
+        boolean same(int k, Lines other, int j) {
+            return Arrays.equals(_text, start(k), start(k + 1), other._text,
+                                 other.start(j), other.start(j + 1));
+        }
+
+        /** Write lines [FROM, TO), with their newlines, to OUT. */
+        void copy(int from, int to, OutputStream out) throws IOException {
+            out.write(_text, start(from), start(to) - start(from));
+        }
+
+        /** Write line K, without its newline, to OUT. */
+        void write(int k, PrintStream out) {
+            out.write(_text, start(k), end(k) - start(k));
+        }
+
+        /** The text. */
+        private final byte[] _text;
+        /** Start of each line, followed by the length of the text. */
+        private final int[] _starts;
+    }
+
+    /** A difference: lines [BEGINA, ENDA) of the first text are replaced
+     *  by lines [BEGINB, ENDB) of the second. */
+    static class Edit {
+        /** An edit replacing lines [BEGINA, ENDA) of the first text by
+         *  lines [BEGINB, ENDB) of the second. */
+        Edit(int beginA, int endA, int beginB, int endB) {
+            this.beginA = beginA;
+            this.endA = endA;
+            this.beginB = beginB;
+            this.endB = endB;
+        }
+
+        /** The replaced region of the first text. */
+        final int beginA, endA;
+        /** The replacing region of the second text. */
+        final int beginB, endB;
+    }
+
+    /** Returns the differences between A and B, in order.  Consecutive
+     *  edits are separated by at least one unchanged line. */
+    static List<Edit> diff(Lines a, Lines b) {
+        return new Diff(a, b).run();
+    }
+
+    /** A comparison of A with B. */
+    private Diff(Lines a, Lines b) {
+        _a = new int[a.size()];
+        _b = new int[b.size()];
+        Interner interner = new Interner(a.size() + b.size());
+        for (int k = 0; k < _a.length; k += 1) {
+            _a[k] = interner.intern(a, k);
+        }
+        for (int k = 0; k < _b.length; k += 1) {
+            _b[k] = interner.intern(b, k);
+        }
+        _count = new int[interner.size()];
+        _head = new int[interner.size()];
+        _next = new int[_a.length];
+    }
+
+    /** Returns my edits. */
+    private List<Edit> run() {
+        diff(0, _a.length, 0, _b.length);
+        return _edits;
+    }
+
+    /** Add the edits turning lines [AS, AE) of A into lines [BS, BE) of B
+     *  to my result. */
+    private void diff(int as, int ae, int bs, int be) {
+        while (true) {
+            while (as < ae && bs < be && _a[as] == _b[bs]) {
+                as += 1;
+                bs += 1;
+            }
+            while (as < ae && bs < be && _a[ae - 1] == _b[be - 1]) {
+                ae -= 1;
+                be -= 1;
+            }
+            if (as == ae || bs == be) {
+                add(as, ae, bs, be);
+                return;
+            }
+            int[] anchor = anchor(as, ae, bs, be);
+            if (anchor == null) {
+                add(as, ae, bs, be);
+                return;
+            } else if (anchor.length == 0) {
+                myers(as, ae, bs, be);
+                return;
+            }
+            diff(as, anchor[0], bs, anchor[1]);
+            as = anchor[0] + anchor[2];
+            bs = anchor[1] + anchor[2];
+        }
+    }
+
+    /** Returns the best anchor for comparing lines [AS, AE) of A with
+     *  lines [BS, BE) of B, as an array of its start in A, its start in B,
+     *  and its length.  Returns an empty array if the regions have lines
+     *  in common but all are too frequent to use, and null if they have
+     *  none in common. */
+    private int[] anchor(int as, int ae, int bs, int be) {
+        for (int i = ae - 1; i >= as; i -= 1) {
+            _count[_a[i]] = 0;
+        }
+        for (int i = ae - 1; i >= as; i -= 1) {
+            int line = _a[i];
+            _next[i] = _count[line] == 0 ? -1 : _head[line];
+            _head[line] = i;
+            _count[line] += 1;
+        }
+
+        int[] best = null;
+        int bestCount = MAX_CHAIN + 1;
+        boolean common = false;
+        for (int j = bs; j < be; ) {
+            int line = _b[j];
+            int next = j + 1;
+            if (occurs(line, as, ae)) {
+                common = true;
+                int count = _count[line];
+                for (int i = _head[line]; count <= MAX_CHAIN
+                         && count <= bestCount && i >= 0; i = _next[i]) {
+                    int i0 = i, j0 = j, i1 = i + 1, j1 = j + 1;
+                    while (i0 > as && j0 > bs && _a[i0 - 1] == _b[j0 - 1]) {
+                        i0 -= 1;
+                        j0 -= 1;
+                    }
+                    while (i1 < ae && j1 < be && _a[i1] == _b[j1]) {
+                        i1 += 1;
+                        j1 += 1;
+                    }
+                    if (count < bestCount || i1 - i0 > best[2]) {
+                        best = new int[] { i0, j0, i1 - i0 };
+                        bestCount = count;
+                    }
+                    next = Math.max(next, j1);
+                }
+            }
+            j = next;
+        }
+        if (best == null) {
+            return common ? new int[0] : null;
+        }
+        return best;
+    }
+
+    /** Returns true iff LINE occurs among lines [AS, AE) of A, whose
+     *  occurrences have just been counted. */
+    private boolean occurs(int line, int as, int ae) {
+        int i = _head[line];
+        return i >= as && i < ae && _a[i] == line && _count[line] > 0;
+    }
+
+    /** Add the edits turning lines [AS, AE) of A into lines [BS, BE) of B,
+     *  found with the Myers algorithm, to my result.  If they number more
+     *  than MAX_EDITS, add a single edit replacing the whole region. */
+    private void myers(int as, int ae, int bs, int be) {
+        int n = ae - as, m = be - bs, max = Math.min(n + m, MAX_EDITS);
+        int offset = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>();
+        int found = -1;
+        for (int d = 0; d <= max && found < 0; d += 1) {
+            trace.add(v.clone());
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[offset + k - 1]
+                                          < v[offset + k + 1])) {
+                    x = v[offset + k + 1];
+                } else {
+                    x = v[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && _a[as + x] == _b[bs + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                v[offset + k] = x;
+                if (x >= n && y >= m) {
+                    found = d;
+                    break;
+                }
+            }
+        }
+        if (found < 0) {
+            add(as, ae, bs, be);
+            return;
+        }
+
+        int[] changedA = new int[n + m], changedB = new int[n + m];
+        int nA = 0, nB = 0;
+        int x = n, y = m;
+        for (int d = found; d > 0; d -= 1) {
+            int[] prev = trace.get(d);
+            int k = x - y;
+            int prevK;
+            if (k == -d || (k != d && prev[offset + k - 1]
+                                      < prev[offset + k + 1])) {
+                prevK = k + 1;
+            } else {
+                prevK = k - 1;
+            }
+            int prevX = prev[offset + prevK], prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x -= 1;
+                y -= 1;
+            }
+            if (prevK == k + 1) {
+                changedB[nB] = bs + prevY;
+                nB += 1;
+            } else {
+                changedA[nA] = as + prevX;
+                nA += 1;
+            }
+            x = prevX;
+            y = prevY;
+        }
+
+        boolean[] delA = new boolean[n], insB = new boolean[m];
+        for (int i = 0; i < nA; i += 1) {
+            delA[changedA[i] - as] = true;
+        }
+        for (int i = 0; i < nB; i += 1) {
+            insB[changedB[i] - bs] = true;
+        }
+        int i = 0, j = 0;
+        while (i < n || j < m) {
+            if (i < n && j < m && !delA[i] && !insB[j]) {
+                i += 1;
+                j += 1;
+                continue;
+            }
+            int i0 = i, j0 = j;
+            while (i < n && delA[i]) {
+                i += 1;
+            }
+            while (j < m && insB[j]) {
+                j += 1;
+            }
+            add(as + i0, as + i, bs + j0, bs + j);
+        }
+    }
+
+    /** Add the edit replacing lines [AS, AE) of A by lines [BS, BE) of B
+     *  to my result, unless it is empty, merging it with the previous edit
+     *  if they touch. */
+    private void add(int as, int ae, int bs, int be) {
+        if (as == ae && bs == be) {
+            return;
+        }
+        if (!_edits.isEmpty()) {
+            Edit last = _edits.get(_edits.size() - 1);
+            if (last.endA == as && last.endB == bs) {
+                _edits.set(_edits.size() - 1,
+                           new Edit(last.beginA, ae, last.beginB, be));
+                return;
+            }
+        }
+        _edits.add(new Edit(as, ae, bs, be));
+    }
+
+    /** Print the differences EDITS between A and B to OUT in unified
+     *  format, with CONTEXT lines of context around each change. */
+    static void printUnified(Lines a, Lines b, List<Edit> edits,
+                             PrintStream out) {
+        for (int e = 0; e < edits.size(); ) {
+            int last = e;
+            while (last + 1 < edits.size()
+                   && edits.get(last + 1).beginA - edits.get(last).endA
+                      <= 2 * CONTEXT) {
+                last += 1;
+            }
+            Edit first = edits.get(e), end = edits.get(last);
+            int as = Math.max(0, first.beginA - CONTEXT);
+            int bs = first.beginB - (first.beginA - as);
+            int ae = Math.min(a.size(), end.endA + CONTEXT);
+            int be = end.endB + (ae - end.endA);
+            out.printf("@@ -%s +%s @@%n", range(as, ae), range(bs, be));
+            int i = as;
+            for (int k = e; k <= last; k += 1) {
+                Edit edit = edits.get(k);
+                for (; i < edit.beginA; i += 1) {
+                    printLine(' ', a, i, out);
+                }
+                for (i = edit.beginA; i < edit.endA; i += 1) {
+                    printLine('-', a, i, out);
+                }
+                for (int j = edit.beginB; j < edit.endB; j += 1) {
+                    printLine('+', b, j, out);
+                }
+            }
+            for (; i < ae; i += 1) {
+                printLine(' ', a, i, out);
+            }
+            e = last + 1;
+        }
+    }
+
+    /** Returns the description of lines [BEGIN, END) in a hunk header. */
+    private static String range(int begin, int end) {
+        if (end - begin == 1) {
+            return Integer.toString(begin + 1);
+        }
+        return (begin == end ? begin : begin + 1) + "," + (end - begin);
+    }
+
+    /** Print line K of LINES, preceded by MARK, to OUT. */
+    private static void printLine(char mark, Lines lines, int k,
+                                  PrintStream out) {
+        out.print(mark);
+        lines.write(k, out);
+        out.println();
+        if (k == lines.size() - 1 && lines.missingNewline()) {
+            out.println("\\ No newline at end of file");
+        }
+    }
+
+    /** Assigns small integers to distinct lines. */
+    private static class Interner {
+        /** An interner with room for about N distinct lines. */
+        Interner(int n) {
+            int capacity = Integer.highestOneBit(Math.max(n, 8) * 2) * 2;
+            _slots = new int[capacity];
+            _hashes = new int[capacity];
+            _lines = new Lines[n];
+            _numbers = new int[n];
+        }
+
+        /** Returns the integer for line K of LINES. */
+        int intern(Lines lines, int k) {
+            int hash = lines.hash(k);
+            int mask = _slots.length - 1;
+            for (int s = mix(hash) & mask; ; s = (s + 1) & mask) {
+                int id = _slots[s] - 1;
+                if (id < 0) {
+                    _slots[s] = _size + 1;
+                    _hashes[s] = hash;
+                    _lines[_size] = lines;
+                    _numbers[_size] = k;
+                    _size += 1;
+                    return _size - 1;
+                }
+                if (_hashes[s] == hash
+                    && lines.same(k, _lines[id], _numbers[id])) {
+                    return id;
+                }
+            }
+        }
+
+        /** Returns the number of distinct lines seen. */
+        int size() {
+            return _size;
+        }
+
+        /** Returns HASH with its bits spread out. */
+        private static int mix(int hash) {
+            return hash * 0x9E3779B9 ^ (hash >>> 16);
+        }
+
+        /** One more than the integer stored in each slot, or 0. */
+        private final int[] _slots;
+        /** The hash of the line stored in each slot. */
+        private final int[] _hashes;
+        /** The text and line number of the first occurrence of each
+         *  distinct line. */
+        private final Lines[] _lines;
+        private final int[] _numbers;
+        /** The number of distinct lines. */
+        private int _size;
+    }
+
+    /** The interned lines of the two texts. */
+    private final int[] _a, _b;
+    /** For each interned line: the number of its occurrences in the
+     *  current region of A, and the position of the first. */
+    private final int[] _count, _head;
+    /** For each line of A, the next occurrence of the same line in the
+     *  current region, or -1. */
+    private final int[] _next;
+    /** The edits found so far. */
+    private final List<Edit> _edits = new ArrayList<>();
+}
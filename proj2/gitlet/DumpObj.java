@@ -1,14 +1,23 @@
 package gitlet;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.InflaterInputStream;
 
 /** A debugging class whose main program may be invoked as follows:
  *      java gitlet.DumpObj FILE...
  *  where each FILE is a file produced by Utils.writeObject (or any file
- *  containing a serialized object).  This will simply read FILE,
+ *  containing a serialized object), or an object file from one of the
+ *  repository's ObjectStores.  This will simply read FILE, decode or
  *  deserialize it, and call the dump method on the resulting Object.
- *  The object must implement the gitlet.Dumpable interface for this
- *  to work.  For example, you might define your class like this:
+ *  Compressed store objects are inflated first, and objects in one of
+ *  gitlet's binary encodings (a Commit or Tree) are decoded with that
+ *  encoding.  Any other object must implement the gitlet.Dumpable
+ *  interface for this to work.  For example, you might define your class
+ *  like this:
  *
  *        import java.io.Serializable;
  *        import java.util.TreeMap;
@@ -29,15 +38,42 @@ import java.io.File;
  */
 public class DumpObj {
 
-    /** Deserialize and apply dump to the contents of each of the files
-     *  in FILES. */
+    /** Decode or deserialize and apply dump to the contents of each of the
+     *  files in FILES. */
     public static void main(String... files) {
         for (String fileName : files) {
-            Dumpable obj = Utils.readObject(new File(fileName),
-                                            Dumpable.class);
+            File file = new File(fileName);
+            byte[] contents = inflated(Utils.readContents(file));
+            Dumpable obj;
+            if (Commit.isEncoded(contents)) {
+                obj = Commit.decode(contents);
+            } else if (Tree.isEncoded(contents)) {
+                obj = Tree.decode(contents);
+            } else {
+                obj = Utils.readObject(file, Dumpable.class);
+            }
             obj.dump();
             System.out.println("---");
         }
     }
+
+    /** Returns the body of CONTENTS, decompressed if need be, if it is an
+     *  ObjectStore object, and otherwise CONTENTS itself. */
+    private static byte[] inflated(byte[] contents) {
+        if (contents.length > 0 && contents[0] == ObjectStore.FORMAT_RAW) {
+            return Arrays.copyOfRange(contents, 1, contents.length);
+        }
+        if (contents.length == 0
+            || contents[0] != ObjectStore.FORMAT_DEFLATED) {
+            return contents;
+        }
+        InputStream body =
+            new ByteArrayInputStream(contents, 1, contents.length - 1);
+        try (InputStream in = new InflaterInputStream(body)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            return contents;
+        }
+    }
 }
 
@@ -0,0 +1,245 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** A sorted index of fixed-width keys, given as hexadecimal numerals,
+ *  that finds all keys with a given prefix.  With UIDs as keys, it
+ *  resolves abbreviated UIDs.  With keys that are pairs of UIDs, it maps
+ *  the first of each pair to all the seconds paired with it.
+ *
+ *  The index consists of a main file holding raw keys in increasing
+ *  order, which is memory-mapped and binary-searched, and a small tail
+ *  file of keys added since the main file was last written, in the order
+ *  they were added.  Keys added are held in memory until flush appends
+ *  them to the tail and flushes it to disk, which the owner of the index
+ *  does only once the objects they name are on disk (see
+ *  Transaction.afterSync).  Once the tail holds TAIL_LIMIT keys, it is
+ *  merged into the main file, which is replaced atomically.  So finding a
+ *  prefix takes logarithmic time in the size of the main file plus a scan
+ *  of at most TAIL_LIMIT keys, and adding costs one small write with an
+ *  occasional rewrite.
+ */
+class IdIndex {
+
+    /** Largest number of UIDs kept in the tail file. */
+    private static final int TAIL_LIMIT = 256;
+
+    /** An index of UIDs kept in the file FILE, with its tail in
+     *  FILE.tail. */
+    IdIndex(File file) {
+        this(file, UID_BYTES);
+    }
+
+    /** An index of keys of WIDTH bytes kept in the file FILE, with its
+     *  tail in FILE.tail. */
+    IdIndex(File file, int width) {
+        _file = file;
+        _tail = new File(file.getPath() + ".tail");
+        _width = width;
+    }
+
+    /** Returns true iff my main file exists. */
+    boolean exists() {
+        return _file.isFile();
+    }
+
+    /** Replace my contents with the keys in KEYS. */
+    void rebuild(List<String> keys) {
+        writeMain(new TreeSet<>(keys).toArray(new String[0]));
+        _tail.delete();
+        _tailIds = null;
+        _tailWritten = 0;
+    }
+
+    /** Add the key ID to the index, unless it is already there.  It is not
+     *  written to my files until the next flush. */
+    void add(String id) {
+        if (matching(id).isEmpty()) {
+            tailIds().add(id);
+        }
+    }
+
+    /** Write the keys added since my files were last written to them, and
+     *  flush them to disk. */
+    void flush() {
+        List<String> tail = tailIds();
+        if (tail.size() == _tailWritten && exists()) {
+            return;
+        }
+        if (!exists() || tail.size() >= TAIL_LIMIT) {
+            ArrayList<String> all = new ArrayList<>(tail);
+            for (int k = 0; k < mainSize(); k += 1) {
+                all.add(mainId(k));
+            }
+            rebuild(all);
+            return;
+        }
+        long end = (long) _tailWritten * _width;
+        ByteBuffer added =
+            ByteBuffer.allocate((tail.size() - _tailWritten) * _width);
+        for (String id : tail.subList(_tailWritten, tail.size())) {
+            added.put(fromHex(id));
+        }
+        added.flip();
+        boolean created = !_tail.isFile();
+        try (FileChannel out =
+                 FileChannel.open(_tail.toPath(), StandardOpenOption.CREATE,
+                                  StandardOpenOption.WRITE)) {
+            out.truncate(end);
+            while (added.hasRemaining()) {
+                out.write(added, end + added.position());
+            }
+            out.force(true);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (created) {
+            Transaction.forceDirectory(_tail.getParentFile());
+        }
+        _tailWritten = tail.size();
+    }
+
+    /** Returns all keys in the index that start with the hexadecimal
+     *  numeral PREFIX, in increasing order. */
+    List<String> matching(String prefix) {
+        return matching(prefix, Integer.MAX_VALUE);
+    }
+
+    /** Returns the first LIMIT keys (or all, if fewer) in the index that
+     *  start with the hexadecimal numeral PREFIX, in increasing order.  The
+     *  scan stops as soon as LIMIT keys are found in the main file, so
+     *  that a short PREFIX does not cost a walk over every key it
+     *  matches; keys in the tail are merged in afterwards. */
+    List<String> matching(String prefix, int limit) {
+        String low = prefix + "0".repeat(2 * _width - prefix.length());
+        byte[] raw = fromHex(low);
+        int lo = 0, hi = mainSize();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, raw) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        ArrayList<String> result = new ArrayList<>();
+        for (int k = lo; k < mainSize() && result.size() < limit; k += 1) {
+            String id = mainId(k);
+            if (!id.startsWith(prefix)) {
+                break;
+            }
+            result.add(id);
+        }
+        for (String id : tailIds()) {
+            if (id.startsWith(prefix) && !result.contains(id)) {
+                result.add(id);
+            }
+        }
+        result.sort(null);
+        return result.size() > limit ? result.subList(0, limit) : result;
+    }
+
+    /** Returns the single UID that starts with the hexadecimal numeral
+     *  PREFIX, or null if there is none.  Throws a GitletException if
+     *  PREFIX is ambiguous, which is known once a second match is found. */
+    String resolve(String prefix) {
+        List<String> found = matching(prefix.toLowerCase(), 2);
+        if (found.size() > 1) {
+            throw error("Ambiguous commit id: %s matches several commits.",
+                        prefix);
+        }
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /** Returns the number of keys in my main file. */
+    private int mainSize() {
+        return main().capacity() / _width;
+    }
+
+    /** Returns the Kth key in my main file. */
+    private String mainId(int k) {
+        byte[] raw = new byte[_width];
+        main().get(k * _width, raw);
+        return toHex(raw);
+    }
+
+    /** Compare the Kth key of my main file with the raw key RAW. */
+    private int compare(int k, byte[] raw) {
+        ByteBuffer main = main();
+        for (int i = 0; i < _width; i += 1) {
+            int c = (main.get(k * _width + i) & 0xff) - (raw[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns my main file, mapped. */
+    private ByteBuffer main() {
+        if (_main == null) {
+            if (!_file.isFile()) {
+                return ByteBuffer.allocate(0);
+            }
+            try (FileChannel in =
+                     FileChannel.open(_file.toPath(),
+                                      StandardOpenOption.READ)) {
+                _main = in.map(FileChannel.MapMode.READ_ONLY, 0, in.size());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return _main;
+    }
+
+    /** Returns the keys in my tail file, reading it if needed. */
+    private List<String> tailIds() {
+        if (_tailIds == null) {
+            _tailIds = new ArrayList<>();
+            if (_tail.isFile()) {
+                byte[] raw = readContents(_tail);
+                for (int i = 0; i + _width <= raw.length; i += _width) {
+                    _tailIds.add(toHex(Arrays.copyOfRange(raw, i,
+                                                          i + _width)));
+                }
+            }
+            _tailWritten = _tailIds.size();
+        }
+        return _tailIds;
+    }
+
+    /** Replace my main file with the sorted keys SORTED. */
+    private void writeMain(String[] sorted) {
+        byte[] raw = new byte[sorted.length * _width];
+        for (int k = 0; k < sorted.length; k += 1) {
+            System.arraycopy(fromHex(sorted[k]), 0, raw, k * _width,
+                             _width);
+        }
+        Transaction.replace(_file, (Object) raw);
+        _main = null;
+    }
+
+    /** My main file. */
+    private final File _file;
+    /** My tail file. */
+    private final File _tail;
+    /** The width of my keys in bytes. */
+    private final int _width;
+    /** My main file, mapped, or null if not yet mapped. */
+    private ByteBuffer _main;
+    /** The keys in my tail file followed by those added since it was last
+     *  written, or null if not yet read. */
+    private List<String> _tailIds;
+    /** The number of keys of _tailIds in my tail file. */
+    private int _tailWritten;
+}
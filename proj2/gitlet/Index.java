@@ -0,0 +1,317 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static gitlet.Utils.*;
+
+/** The staging area, persisted as .gitlet/index.  The index holds the
+ *  snapshot that the next commit will record: for each tracked file, the
+ *  UID of the blob with its staged contents.  A file is staged for
+ *  addition when its index entry differs from the head commit, and staged
+ *  for removal when the head commit tracks it but the index does not.
+ *
+ *  Each entry also caches the size and modification time that the working
+ *  file had when it was last known to hold the entry's contents.  A
+ *  working file whose size and modification time still match is taken to
+ *  be unchanged without being read, so detecting modifications costs one
+ *  stat call per file rather than a hash of every byte.  An entry whose
+ *  modification time is too close to the moment it was cached to be
+ *  trusted (it may have been modified again within the file system's clock
+ *  granularity) is stored without a time, and so is rehashed, and
+ *  recached, the next time it is examined.
+ *
+ *  File names are paths relative to the working directory, with
+ *  components separated by '/'.  The index also caches the UIDs of the
+ *  trees (see Tree) last computed for directories of the staged snapshot.
+ *  Staging a change to a file discards the cached trees of the
+ *  directories containing it, so the trees for the next commit need be
+ *  computed only for directories that have changed.
+ *
+ *  The file consists of MAGIC, the number of entries, and then for each
+ *  entry in order of name: the name (as for DataOutput.writeUTF), the
+ *  blob UID (20 bytes), the size, and the modification time.  There
+ *  follow the number of cached trees and, for each, the directory's name
+ *  ("" for the working directory) and the tree's UID.  Files of version
+ *  1, which lack the trees, are also accepted.
+ */
+class Index {
+
+    /** Leading bytes of an index file. */
+    private static final byte[] MAGIC = { 'G', 'L', 'X', 2 };
+
+    /** Modification times within this many milliseconds of the time they
+     *  are cached are not trusted. */
+    private static final long RACY_WINDOW = 2000;
+
+    /** Modification time recorded for entries that must be rehashed. */
+    private static final long UNKNOWN = -1;
+
+    /** One entry of the index. */
+    static class Entry {
+        /** An entry staging the blob with UID ID, last seen in a working
+         *  file of SIZE bytes modified at MTIME. */
+        Entry(ObjectId id, long size, long mtime) {
+            this.id = id;
+            this.size = size;
+            this.mtime = mtime;
+        }
+
+        /** Returns true iff FILE appears unchanged since I was cached. */
+        boolean matches(File file) {
+            return mtime != UNKNOWN && file.lastModified() == mtime
+                && file.length() == size;
+        }
+
+        /** UID of the staged blob. */
+        final ObjectId id;
+        /** Size of the working file when last cached. */
+        final long size;
+        /** Modification time of the working file when last cached, or
+         *  UNKNOWN. */
+        final long mtime;
+    }
+
+    /** An empty index. */
+    Index() {
+    }
+
+    /** An index staging the snapshot SNAPSHOT, with no cached stat data. */
+    Index(Map<String, ObjectId> snapshot) {
+        for (Map.Entry<String, ObjectId> entry : snapshot.entrySet()) {
+            _entries.put(entry.getKey(),
+                         new Entry(entry.getValue(), 0, UNKNOWN));
+        }
+        _changed = true;
+    }
+
+    /** Returns the index stored in FILE, or an empty index if FILE does
+     *  not exist. */
+    static Index read(File file) {
+        Index result = new Index();
+        if (!file.isFile()) {
+            return result;
+        }
+        try (DataInputStream in =
+                 new DataInputStream(new BufferedInputStream(
+                     Files.newInputStream(file.toPath())))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            for (int i = 0; i < MAGIC.length - 1; i += 1) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException("bad index");
+                }
+            }
+            int version = magic[MAGIC.length - 1];
+            if (version < 1 || version > MAGIC[MAGIC.length - 1]) {
+                throw new IOException("unknown index version " + version);
+            }
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String name = in.readUTF();
+                ObjectId id = ObjectId.read(in);
+                long size = in.readLong(), mtime = in.readLong();
+                result._entries.put(name, new Entry(id, size, mtime));
+            }
+            if (version > 1) {
+                for (int n = in.readInt(); n > 0; n -= 1) {
+                    String dir = in.readUTF();
+                    result._trees.put(dir, ObjectId.read(in));
+                }
+            }
+        } catch (IOException excp) {
+            throw error("Corrupt index file: %s", excp.getMessage());
+        }
+        return result;
+    }
+
+    /** Stage writing me to FILE as part of TXN, if I have changed since I
+     *  was read.  Entries with untrusted times lose them in memory as well
+     *  as on disk, so that an index kept across commands (see Daemon)
+     *  trusts no more than one read back from FILE would. */
+    void write(Transaction txn, File file) {
+        if (!_changed) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(MAGIC);
+            out.writeInt(_entries.size());
+            for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.mtime >= now - RACY_WINDOW) {
+                    entry = new Entry(entry.id, entry.size, UNKNOWN);
+                    e.setValue(entry);
+                }
+                out.writeUTF(e.getKey());
+                entry.id.write(out);
+                out.writeLong(entry.size);
+                out.writeLong(entry.mtime);
+            }
+            out.writeInt(_trees.size());
+            for (Map.Entry<String, ObjectId> tree : _trees.entrySet()) {
+                out.writeUTF(tree.getKey());
+                tree.getValue().write(out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        txn.write(file, (Object) bytes.toByteArray());
+        _changed = false;
+    }
+
+    /** Returns true iff NAME is in the index. */
+    boolean contains(String name) {
+        return _entries.containsKey(name);
+    }
+
+    /** Returns the UID of the blob staged for NAME, or null if NAME is not
+     *  in the index. */
+    ObjectId blob(String name) {
+        Entry entry = _entries.get(name);
+        return entry == null ? null : entry.id;
+    }
+
+    /** Returns the entry for NAME, or null if there is none. */
+    Entry entry(String name) {
+        return _entries.get(name);
+    }
+
+    /** Stage BLOB for NAME, recording the stat data of the working file
+     *  FILE, which holds BLOB's contents. */
+    void put(String name, ObjectId blob, File file) {
+        Entry old = _entries.put(name, new Entry(blob, file.length(),
+                                                 file.lastModified()));
+        if (old == null || !old.id.equals(blob)) {
+            invalidate(name);
+        }
+        _changed = true;
+    }
+
+    /** Make ENTRY, taken from another index, the entry for NAME. */
+    void put(String name, Entry entry) {
+        Entry old = _entries.put(name, entry);
+        if (old == null || !old.id.equals(entry.id)) {
+            invalidate(name);
+        }
+        _changed = true;
+    }
+
+    /** Remove NAME from the index. */
+    void remove(String name) {
+        if (_entries.remove(name) != null) {
+            invalidate(name);
+            _changed = true;
+        }
+    }
+
+    /** Returns the UID of the tree cached for directory DIR ("" for the
+     *  working directory), or null if none is cached. */
+    ObjectId cachedTree(String dir) {
+        return _trees.get(dir);
+    }
+
+    /** Returns the UIDs of my cached trees. */
+    Collection<ObjectId> cachedTrees() {
+        return _trees.values();
+    }
+
+    /** Cache TREE as the UID of the tree for directory DIR. */
+    void cacheTree(String dir, ObjectId tree) {
+        if (!tree.equals(_trees.put(dir, tree))) {
+            _changed = true;
+        }
+    }
+
+    /** Discard the cached trees of the directories containing file
+     *  NAME. */
+    private void invalidate(String name) {
+        _trees.remove("");
+        for (int k = name.indexOf('/'); k >= 0; k = name.indexOf('/', k + 1)) {
+            _trees.remove(name.substring(0, k));
+        }
+    }
+
+    /** Returns the staged snapshot: an unmodifiable map from file names to
+     *  blob UIDs, in order of name. */
+    SortedMap<String, ObjectId> snapshot() {
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        for (Map.Entry<String, Entry> entry : _entries.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().id);
+        }
+        return Collections.unmodifiableSortedMap(result);
+    }
+
+    /** Returns my entries, keyed and ordered by file name. */
+    SortedMap<String, Entry> entries() {
+        return Collections.unmodifiableSortedMap(_entries);
+    }
+
+    /** Returns the UID of the blob that would hold the current contents of
+     *  the working file FILE, which is tracked under NAME.  When FILE's
+     *  stat data matches that cached for NAME, the cached UID is returned
+     *  without reading FILE.  Otherwise FILE is hashed, and if it turns out
+     *  to hold the staged contents after all, the cache is refreshed. */
+    ObjectId currentId(String name, File file) {
+        Entry entry = _entries.get(name);
+        if (entry != null && entry.matches(file)) {
+            return entry.id;
+        }
+        ObjectId id = ObjectId.fromHex(sha1(file));
+        if (entry != null && id.equals(entry.id)) {
+            put(name, id, file);
+        }
+        return id;
+    }
+
+    /** Returns the UIDs of the blobs that would hold the current contents
+     *  of each of the working files FILES, tracked under the corresponding
+     *  NAMES, as for currentId.  Files whose stat data is unchanged are not
+     *  read; the rest are hashed in parallel.  The result is in the order
+     *  of NAMES. */
+    List<ObjectId> currentIds(List<String> names, List<File> files) {
+        ObjectId[] result = new ObjectId[names.size()];
+        List<Integer> stale = new ArrayList<>();
+        for (int i = 0; i < result.length; i += 1) {
+            Entry entry = _entries.get(names.get(i));
+            if (entry != null && entry.matches(files.get(i))) {
+                result[i] = entry.id;
+            } else {
+                stale.add(i);
+            }
+        }
+        List<String> hashes =
+            sha1All(stale.stream().map(files::get)
+                    .collect(Collectors.toList()));
+        for (int k = 0; k < hashes.size(); k += 1) {
+            int i = stale.get(k);
+            String name = names.get(i);
+            result[i] = ObjectId.fromHex(hashes.get(k));
+            if (result[i].equals(blob(name))) {
+                put(name, result[i], files.get(i));
+            }
+        }
+        return Arrays.asList(result);
+    }
+
+    /** Map of file names to entries. */
+    private final TreeMap<String, Entry> _entries = new TreeMap<>();
+    /** Map of directory names to the UIDs of their cached trees. */
+    private final TreeMap<String, ObjectId> _trees = new TreeMap<>();
+    /** True iff I differ from the file I was read from. */
+    private boolean _changed;
+}
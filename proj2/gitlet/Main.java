@@ -1,27 +1,199 @@
 package gitlet;
 
-/** Driver class for Gitlet, a subset of the Git version-control system.
- *  @author TODO
- */
+import java.util.Arrays;
+
+import static gitlet.Utils.*;
+
+/** Driver class for Gitlet, a subset of the Git version-control system. */
 public class Main {
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND1> <OPERAND2> ... 
+     *  <COMMAND> <OPERAND1> <OPERAND2> ...
      */
     public static void main(String[] args) {
-        // TODO: what if args is empty?
-        String firstArg = args[0];
-        switch(firstArg) {
-            case "init":
-                // TODO: handle the `init` command
-                // is there a .gitlet already?
-                    // if so throw error
-                // else create a .gitlet folder and a commit file
-                break;
-            case "add":
-                // TODO: handle the `add [filename]` command
-                break;
-            // TODO: FILL THE REST IN
+        int status = Daemon.forward(args);
+        if (status > 0) {
+            System.exit(status);
+        } else if (status < 0) {
+            run(args);
+        }
+    }
+
+    /** Execute the command given by ARGS in this process, reporting any
+     *  error on the standard output. */
+    static void run(String[] args) {
+        try {
+            if (args.length == 0) {
+                throw error("Please enter a command.");
+            }
+            String firstArg = args[0];
+            if (Repository.GITLET_DIR.isDirectory()) {
+                Repository.recover();
+            }
+            Repository.beginCommand();
+            switch(firstArg) {
+                case "init":
+                    checkOperands(args, 1, false);
+                    Repository.init();
+                    break;
+                case "add":
+                    checkOperands(args, 2, true);
+                    Repository.add(args[1]);
+                    break;
+                case "commit":
+                    checkOperands(args, 2, true);
+                    Repository.commit(args[1]);
+                    break;
+                case "rm":
+                    checkOperands(args, 2, true);
+                    Repository.rm(args[1]);
+                    break;
+                case "log":
+                    Repository.checkInitialized();
+                    Repository.log(Arrays.copyOfRange(args, 1, args.length));
+                    break;
+                case "global-log":
+                    Repository.checkInitialized();
+                    Repository.globalLog(
+                        Arrays.copyOfRange(args, 1, args.length));
+                    break;
+                case "find":
+                    checkOperands(args, 2, true);
+                    Repository.find(args[1]);
+                    break;
+                case "status":
+                    checkOperands(args, 1, true);
+                    Repository.status();
+                    break;
+                case "checkout":
+                    Repository.checkInitialized();
+                    checkout(args);
+                    break;
+                case "branch":
+                    checkOperands(args, 2, true);
+                    Repository.branch(args[1]);
+                    break;
+                case "rm-branch":
+                    checkOperands(args, 2, true);
+                    Repository.rmBranch(args[1]);
+                    break;
+                case "reset":
+                    checkOperands(args, 2, true);
+                    Repository.reset(args[1]);
+                    break;
+                case "merge":
+                    checkOperands(args, 2, true);
+                    Repository.merge(args[1]);
+                    break;
+                case "pack":
+                    checkOperands(args, 1, true);
+                    Repository.pack();
+                    break;
+                case "gc":
+                    checkOperands(args, 1, true);
+                    Repository.gc();
+                    break;
+                case "diff":
+                    Repository.checkInitialized();
+                    if (args.length > 3) {
+                        throw error("Incorrect operands.");
+                    }
+                    Repository.diff(Arrays.copyOfRange(args, 1, args.length));
+                    break;
+                case "config":
+                    Repository.checkInitialized();
+                    if (args.length == 2) {
+                        Repository.config(args[1], null);
+                    } else if (args.length == 3) {
+                        Repository.config(args[1], args[2]);
+                    } else {
+                        throw error("Incorrect operands.");
+                    }
+                    break;
+                case "add-remote":
+                    checkOperands(args, 3, true);
+                    Repository.addRemote(args[1], args[2]);
+                    break;
+                case "rm-remote":
+                    checkOperands(args, 2, true);
+                    Repository.rmRemote(args[1]);
+                    break;
+                case "fetch":
+                    Repository.checkInitialized();
+                    if (args.length < 3) {
+                        throw error("Incorrect operands.");
+                    }
+                    Repository.fetch(args[1], args[2],
+                                     Arrays.copyOfRange(args, 3, args.length));
+                    break;
+                case "push":
+                    checkOperands(args, 3, true);
+                    Repository.push(args[1], args[2]);
+                    break;
+                case "pull":
+                    checkOperands(args, 3, true);
+                    Repository.pull(args[1], args[2]);
+                    break;
+                case "cache-stats":
+                    checkOperands(args, 1, true);
+                    Repository.cacheStats();
+                    break;
+                case "daemon":
+                    daemon(args);
+                    break;
+                default:
+                    throw error("No command with that name exists.");
+            }
+            Repository.commitTransaction();
+        } catch (GitletException excp) {
+            Repository.abortTransaction();
+            message(excp.getMessage());
+        }
+    }
+
+    /** Perform the checkout command with arguments ARGS, which has one of
+     *  the forms
+     *      checkout -- FILE
+     *      checkout COMMIT -- FILE
+     *      checkout BRANCH
+     */
+    private static void checkout(String[] args) {
+        if (args.length == 3 && args[1].equals("--")) {
+            Repository.checkoutFile(null, args[2]);
+        } else if (args.length == 4 && args[2].equals("--")) {
+            Repository.checkoutFile(args[1], args[3]);
+        } else if (args.length == 2) {
+            Repository.checkoutBranch(args[1]);
+        } else {
+            throw error("Incorrect operands.");
+        }
+    }
+
+    /** Perform the daemon command with arguments ARGS, which has one of
+     *  the forms
+     *      daemon
+     *      daemon stop
+     */
+    private static void daemon(String[] args) {
+        Repository.checkInitialized();
+        if (args.length == 1) {
+            Daemon.serve();
+        } else if (args.length == 2 && args[1].equals("stop")) {
+            Daemon.stop();
+        } else {
+            throw error("Incorrect operands.");
+        }
+    }
+
+    /** Throw a GitletException unless ARGS consists of a command and
+     *  exactly N - 1 operands, and, if REPO, the current directory holds
+     *  an initialized Gitlet repository. */
+    private static void checkOperands(String[] args, int n, boolean repo) {
+        if (args.length != n) {
+            throw error("Incorrect operands.");
+        }
+        if (repo) {
+            Repository.checkInitialized();
         }
     }
 }
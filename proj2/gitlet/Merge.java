@@ -0,0 +1,168 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/** Three-way merges of texts, in the manner of diff3.
+ *
+ *  Both the current ("ours") and the given ("theirs") version of a text
+ *  are compared with the version at the split point (the "base").  Their
+ *  edits are then walked together in order of position in the base.  An
+ *  edit that overlaps or touches no edit from the other side is applied
+ *  as is, as are overlapping edits that make identical changes.  Other
+ *  overlapping edits are grouped into a conflict, written as
+ *
+ *      <<<<<<< HEAD
+ *      (our version of the region)
+ *      =======
+ *      (their version of the region)
+ *      >>>>>>>
+ *
+ *  where each version ends with a newline.  Edits to disjoint regions of
+ *  a file therefore merge cleanly.  The result is written to a stream as
+ *  it is produced, rather than accumulated.
+ */
+class Merge {
+
+    /** Bytes that open, separate, and close a conflict. */
+    private static final byte[]
+        OURS = "<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8),
+        SEPARATOR = "=======\n".getBytes(StandardCharsets.UTF_8),
+        THEIRS = ">>>>>>>\n".getBytes(StandardCharsets.UTF_8);
+
+    /** Write the merge of the changes from BASE to OURS with the changes
+     *  from BASE to THEIRS to OUT.  Returns true iff there were no
+     *  conflicts. */
+    static boolean merge(byte[] base, byte[] ours, byte[] theirs,
+                         OutputStream out) throws IOException {
+        Diff.Lines b = new Diff.Lines(base), o = new Diff.Lines(ours),
+            t = new Diff.Lines(theirs);
+        if (b.isBinary() || o.isBinary() || t.isBinary()) {
+            conflict(o, 0, o.size(), t, 0, t.size(), out);
+            return false;
+        }
+        return new Merge(b, o, t, out).run();
+    }
+
+    /** A merge of the changes from BASE to OURS with those from BASE to
+     *  THEIRS, written to OUT. */
+    private Merge(Diff.Lines base, Diff.Lines ours, Diff.Lines theirs,
+                  OutputStream out) {
+        _base = base;
+        _ours = ours;
+        _theirs = theirs;
+        _oursEdits = Diff.diff(base, ours);
+        _theirsEdits = Diff.diff(base, theirs);
+        _out = out;
+    }
+
+    /** Perform the merge, returning true iff it had no conflicts. */
+    private boolean run() throws IOException {
+        boolean clean = true;
+        int done = 0, i = 0, j = 0;
+        int oursDelta = 0, theirsDelta = 0;
+        while (i < _oursEdits.size() || j < _theirsEdits.size()) {
+            int lo, hi;
+            if (j == _theirsEdits.size() || (i < _oursEdits.size()
+                    && _oursEdits.get(i).beginA
+                       <= _theirsEdits.get(j).beginA)) {
+                lo = _oursEdits.get(i).beginA;
+                hi = _oursEdits.get(i).endA;
+            } else {
+                lo = _theirsEdits.get(j).beginA;
+                hi = _theirsEdits.get(j).endA;
+            }
+            int i0 = i, j0 = j;
+            while (true) {
+                if (i < _oursEdits.size() && _oursEdits.get(i).beginA <= hi) {
+                    hi = Math.max(hi, _oursEdits.get(i).endA);
+                    i += 1;
+                } else if (j < _theirsEdits.size()
+                           && _theirsEdits.get(j).beginA <= hi) {
+                    hi = Math.max(hi, _theirsEdits.get(j).endA);
+                    j += 1;
+                } else {
+                    break;
+                }
+            }
+
+            _base.copy(done, lo, _out);
+            done = hi;
+            int oursStart = lo + oursDelta, theirsStart = lo + theirsDelta;
+            oursDelta = delta(_oursEdits, i0, i, oursDelta);
+            theirsDelta = delta(_theirsEdits, j0, j, theirsDelta);
+            int oursEnd = hi + oursDelta, theirsEnd = hi + theirsDelta;
+            if (j == j0) {
+                _ours.copy(oursStart, oursEnd, _out);
+            } else if (i == i0) {
+                _theirs.copy(theirsStart, theirsEnd, _out);
+            } else if (same(oursStart, oursEnd, theirsStart, theirsEnd)) {
+                _ours.copy(oursStart, oursEnd, _out);
+            } else {
+                conflict(_ours, oursStart, oursEnd,
+                         _theirs, theirsStart, theirsEnd, _out);
+                clean = false;
+            }
+        }
+        _base.copy(done, _base.size(), _out);
+        return clean;
+    }
+
+    /** Returns DELTA plus the change in length made by EDITS[FROM .. TO-1]:
+     *  the amount to add to a line number of the base after those edits to
+     *  get the corresponding line number in the edited text. */
+    private static int delta(List<Diff.Edit> edits, int from, int to,
+                             int delta) {
+        for (int k = from; k < to; k += 1) {
+            Diff.Edit edit = edits.get(k);
+            delta += (edit.endB - edit.beginB) - (edit.endA - edit.beginA);
+        }
+        return delta;
+    }
+
+    /** Returns true iff lines [OS, OE) of ours equal lines [TS, TE) of
+     *  theirs. */
+    private boolean same(int os, int oe, int ts, int te) {
+        if (oe - os != te - ts) {
+            return false;
+        }
+        for (int k = 0; k < oe - os; k += 1) {
+            if (!_ours.same(os + k, _theirs, ts + k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Write a conflict between lines [OS, OE) of OURS and lines [TS, TE)
+     *  of THEIRS to OUT. */
+    private static void conflict(Diff.Lines ours, int os, int oe,
+                                 Diff.Lines theirs, int ts, int te,
+                                 OutputStream out) throws IOException {
+        out.write(OURS);
+        ours.copy(os, oe, out);
+        terminate(ours, os, oe, out);
+        out.write(SEPARATOR);
+        theirs.copy(ts, te, out);
+        terminate(theirs, ts, te, out);
+        out.write(THEIRS);
+    }
+
+    /** Write a newline to OUT if lines [START, END) of LINES are not empty
+     *  and end without one. */
+    private static void terminate(Diff.Lines lines, int start, int end,
+                                  OutputStream out) throws IOException {
+        if (start < end && end == lines.size() && lines.missingNewline()) {
+            out.write('\n');
+        }
+    }
+
+    /** The three versions being merged. */
+    private final Diff.Lines _base, _ours, _theirs;
+    /** The edits from the base to each side. */
+    private final List<Diff.Edit> _oursEdits, _theirsEdits;
+    /** Where the result is written. */
+    private final OutputStream _out;
+}
@@ -0,0 +1,108 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A cache of objects read from an ObjectStore, keyed by UID, holding at
+ *  most a given number of bytes.  When adding an object would exceed that
+ *  budget, the least recently used objects are evicted.  Since stored
+ *  objects never change, cached ones never go stale, and a cache may be
+ *  kept for as long as the process runs (see Daemon).  Cached values are
+ *  shared, and must not be modified.
+ *
+ *  Objects are keyed by ObjectId rather than by hexadecimal UID, which
+ *  halves the space taken by keys and makes lookups cheaper.
+ *
+ *  The cache counts its hits, misses, and evictions, which dump prints.
+ *  @param <T> the type of cached objects.
+ */
+class ObjectCache<T> implements Dumpable {
+
+    /** An empty cache named NAME holding at most CAPACITY bytes.  No
+     *  object of more than an eighth of CAPACITY is cached. */
+    ObjectCache(String name, long capacity) {
+        _name = name;
+        _capacity = capacity;
+    }
+
+    /** Returns the object with UID ID, or null if it is not cached. */
+    synchronized T get(ObjectId id) {
+        Entry<T> entry = _entries.get(id);
+        if (entry == null) {
+            _misses += 1;
+            return null;
+        }
+        _hits += 1;
+        return entry.value;
+    }
+
+    /** Cache VALUE, which occupies SIZE bytes, as the object with UID
+     *  ID. */
+    synchronized void put(ObjectId id, T value, long size) {
+        if (size > _capacity / 8) {
+            return;
+        }
+        Entry<T> old = _entries.put(id, new Entry<>(value, size));
+        if (old != null) {
+            _size -= old.size;
+        }
+        _size += size;
+        Iterator<Entry<T>> lru = _entries.values().iterator();
+        while (_size > _capacity && lru.hasNext()) {
+            _size -= lru.next().size;
+            lru.remove();
+            _evictions += 1;
+        }
+    }
+
+    /** Empty the cache, keeping its counts. */
+    synchronized void clear() {
+        _entries.clear();
+        _size = 0;
+    }
+
+    /** Returns the number of lookups that found their object. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Returns the number of lookups that did not find their object. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    @Override
+    public synchronized void dump() {
+        System.out.printf("%s: %d objects, %d of %d bytes, %d hits, "
+                          + "%d misses, %d evictions%n",
+                          _name, _entries.size(), _size, _capacity, _hits,
+                          _misses, _evictions);
+    }
+
+    /** A cached object and its size. */
+    private static class Entry<T> {
+        /** An entry for VALUE, of SIZE bytes. */
+        Entry(T value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+
+        /** The cached object. */
+        final T value;
+        /** Its size in bytes. */
+        final long size;
+    }
+
+    /** My name, for dump. */
+    private final String _name;
+    /** The greatest number of bytes I hold. */
+    private final long _capacity;
+    /** My entries, least recently used first. */
+    private final transient Map<ObjectId, Entry<T>> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** The number of bytes I hold. */
+    private long _size;
+    /** My counts of hits, misses, and evictions. */
+    private long _hits, _misses, _evictions;
+}
@@ -0,0 +1,150 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static gitlet.Utils.*;
+
+/** A UID held as its UID_BYTES bytes rather than as a hexadecimal
+ *  numeral.  An ObjectId takes less than half the space of the equivalent
+ *  String, compares in a few word operations, and hashes in constant time
+ *  (the bytes of a SHA-1 hash are already well mixed, so the first four
+ *  serve as the hash code).  It is formatted in hexadecimal only when
+ *  first printed, and then remembers the result.  ObjectIds are used as
+ *  the keys of the in-memory tables that are filled from binary files
+ *  (such as the commit graph's table of UIDs), and for the blob UIDs of
+ *  snapshots, the staging area, and the watcher, so that filling and
+ *  comparing them formats nothing.
+ *
+ *  UIDs remain hexadecimal Strings where they name files (the object
+ *  stores), are typed or printed (commands, branch heads), or are
+ *  matched by prefix (IdIndex, whose keys are hexadecimal numerals of
+ *  more than one width, though it stores them as raw bytes); a UID is
+ *  converted only as it crosses into or out of one of those.
+ *
+ *  ObjectIds are ordered as their bytes are, as unsigned numbers, which is
+ *  the order of their hexadecimal numerals.
+ */
+final class ObjectId implements Comparable<ObjectId> {
+
+    /** The UID whose bytes are W0 (the first 8), W1 (the next 8), and W2
+     *  (the last 4), in big-endian order. */
+    private ObjectId(long w0, long w1, int w2) {
+        _w0 = w0;
+        _w1 = w1;
+        _w2 = w2;
+    }
+
+    /** Returns the UID whose bytes are RAW[OFF .. OFF+UID_BYTES-1]. */
+    static ObjectId of(byte[] raw, int off) {
+        return get(ByteBuffer.wrap(raw), off);
+    }
+
+    /** Returns the UID whose bytes are RAW, which has UID_BYTES bytes. */
+    static ObjectId of(byte[] raw) {
+        if (raw.length != UID_BYTES) {
+            throw new IllegalArgumentException("malformed UID");
+        }
+        return of(raw, 0);
+    }
+
+    /** Returns the UID whose bytes start at position POS of BUF, leaving
+     *  BUF's position unchanged. */
+    static ObjectId get(ByteBuffer buf, int pos) {
+        return new ObjectId(buf.getLong(pos), buf.getLong(pos + 8),
+                            buf.getInt(pos + 16));
+    }
+
+    /** Returns the UID denoted by the hexadecimal numeral HEX, which has
+     *  UID_LENGTH digits. */
+    static ObjectId fromHex(String hex) {
+        if (hex.length() != UID_LENGTH) {
+            throw new IllegalArgumentException("malformed UID: " + hex);
+        }
+        ObjectId result = new ObjectId(word(hex, 0, 16), word(hex, 16, 16),
+                                       (int) word(hex, 32, 8));
+        result._name = hex.toLowerCase();
+        return result;
+    }
+
+    /** Returns the value of the N hexadecimal digits of HEX starting at
+     *  index START. */
+    private static long word(String hex, int start, int n) {
+        long result = 0;
+        for (int i = start; i < start + n; i += 1) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("malformed UID: " + hex);
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    /** Read a UID written by write (or Utils.writeUid) from IN. */
+    static ObjectId read(DataInput in) throws IOException {
+        return new ObjectId(in.readLong(), in.readLong(), in.readInt());
+    }
+
+    /** Write my bytes to OUT. */
+    void write(DataOutput out) throws IOException {
+        out.writeLong(_w0);
+        out.writeLong(_w1);
+        out.writeInt(_w2);
+    }
+
+    /** Write my bytes to BUF at its position, advancing it. */
+    void put(ByteBuffer buf) {
+        buf.putLong(_w0).putLong(_w1).putInt(_w2);
+    }
+
+    /** Returns my bytes. */
+    byte[] toBytes() {
+        ByteBuffer result = ByteBuffer.allocate(UID_BYTES);
+        put(result);
+        return result.array();
+    }
+
+    /** Returns me as a hexadecimal numeral of UID_LENGTH digits. */
+    @Override
+    public String toString() {
+        if (_name == null) {
+            _name = toHex(toBytes());
+        }
+        return _name;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w0 == other._w0 && _w1 == other._w1 && _w2 == other._w2;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (_w0 >>> 32);
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        if (_w0 != other._w0) {
+            return Long.compareUnsigned(_w0, other._w0);
+        } else if (_w1 != other._w1) {
+            return Long.compareUnsigned(_w1, other._w1);
+        } else {
+            return Integer.compareUnsigned(_w2, other._w2);
+        }
+    }
+
+    /** The first sixteen of my bytes. */
+    private final long _w0, _w1;
+    /** The last four of my bytes. */
+    private final int _w2;
+    /** My hexadecimal numeral, once computed. */
+    private String _name;
+}
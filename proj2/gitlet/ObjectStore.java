@@ -0,0 +1,753 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static gitlet.Utils.*;
+
+/** A content-addressed store of immutable objects kept under a single
+ *  directory.  Each object is named by the SHA-1 UID of its contents and
+ *  lives in the file DIR/ab/cdef..., where "ab" are the first two
+ *  hexadecimal digits of its UID and "cdef..." are the rest.  Spreading
+ *  the objects over up to 256 subdirectories keeps every directory small,
+ *  so lookups and listings stay fast as the store grows.
+ *
+ *  An object file consists of a single format byte followed by the
+ *  object's contents, either compressed with zlib (FORMAT_DEFLATED) or,
+ *  if they do not compress appreciably, as they are (FORMAT_RAW).
+ *  Objects are written to a temporary file and then renamed into place,
+ *  so that a reader never sees a partially written object.
+ *
+ *  Copying an object to a file streams it through FileChannels: stored
+ *  contents are transferred by the operating system without passing
+ *  through the Java heap, and compressed ones are inflated through a
+ *  pair of fixed-size direct buffers.
+ *
+ *  Objects may be added and read from several threads at once.
+ *
+ *  Loose objects may later be folded into Packs kept in the subdirectory
+ *  DIR/pack.  Lookups try the loose objects first and then each pack.
+ */
+class ObjectStore {
+
+    /** Format byte of an object whose contents are zlib-compressed. */
+    static final int FORMAT_DEFLATED = 'z';
+
+    /** Format byte of an object whose contents are stored as they are. */
+    static final int FORMAT_RAW = 'r';
+
+    /** Size of the buffers used to copy object contents. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Prefix of the names of the temporary files I write. */
+    static final String TEMP_PREFIX = "tmp-";
+
+    /** Name of the subdirectory holding my packs. */
+    static final String PACK_DIR = "pack";
+
+    /** Name of the subdirectory holding read-only copies of objects that
+     *  are hard-linked into the working directory (see linkTo). */
+    static final String LINK_DIR = "links";
+
+    /** A store whose objects live under DIR. */
+    ObjectStore(File dir) {
+        _dir = dir;
+    }
+
+    /** Returns the directory holding my objects. */
+    File dir() {
+        return _dir;
+    }
+
+    /** Create my directory if it does not exist. */
+    void init() {
+        _dir.mkdirs();
+    }
+
+    /** Returns the file that holds (or would hold) the object with UID ID. */
+    File fileFor(String id) {
+        if (id.length() != UID_LENGTH) {
+            throw new IllegalArgumentException("malformed object id: " + id);
+        }
+        return join(_dir, id.substring(0, 2), id.substring(2));
+    }
+
+    /** Returns true iff I contain an object with UID ID.  Only the
+     *  object's directory entry or pack index entry is examined; its body
+     *  is never read. */
+    boolean contains(String id) {
+        return isLoose(id) || packFor(id) != null;
+    }
+
+    /** Returns true iff the object with UID ID is stored in its own file
+     *  rather than in a pack. */
+    boolean isLoose(String id) {
+        return fileFor(id).isFile();
+    }
+
+    /** Returns the number of bytes that the object with UID ID occupies
+     *  in storage, compressed or not, or -1 if I do not contain it. */
+    long storedSize(String id) {
+        File file = fileFor(id);
+        if (file.isFile()) {
+            return file.length() - 1;
+        }
+        Pack pack = packFor(id);
+        return pack == null ? -1 : pack.storedSize(id);
+    }
+
+    /** Store an object whose contents are the concatenation of CONTENTS,
+     *  each of which is a byte array or String, as for
+     *  Utils.writeContents.  Returns the UID of the object. */
+    String put(Object... contents) {
+        String id = sha1(contents);
+        if (!contains(id)) {
+            File tmp = tempFile();
+            try {
+                long size = write(contents, deflating(tmp));
+                if (!compresses(tmp, size)) {
+                    write(contents, raw(tmp));
+                }
+            } catch (IOException excp) {
+                tmp.delete();
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            install(tmp, id);
+        }
+        return id;
+    }
+
+    /** Store the contents of FILE, which must be a normal file, as an
+     *  object, returning its UID.  The file is hashed and compressed in a
+     *  single streaming pass and is never held in memory all at once. */
+    String put(File file) {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("must be a normal file");
+        }
+        MessageDigest md = sha1Digest();
+        File tmp = tempFile();
+        long size;
+        try (InputStream in =
+                 new DigestInputStream(Files.newInputStream(file.toPath()),
+                                       md);
+             OutputStream out = deflating(tmp)) {
+            size = in.transferTo(out);
+        } catch (IOException excp) {
+            tmp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        String id = toHex(md.digest());
+        if (contains(id)) {
+            tmp.delete();
+            return id;
+        }
+        if (!compresses(tmp, size)) {
+            try (FileChannel in = FileChannel.open(file.toPath(),
+                                                   StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(
+                     tmp.toPath(), StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(ByteBuffer.wrap(new byte[] { FORMAT_RAW }));
+                transfer(in, 0, size, out);
+            } catch (IOException excp) {
+                tmp.delete();
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        install(tmp, id);
+        return id;
+    }
+
+    /** Returns a stream of the contents of the object with UID ID,
+     *  decompressed as they are read.  The caller must close it. */
+    InputStream open(String id) {
+        File file = fileFor(id);
+        if (!file.isFile()) {
+            Pack pack = packFor(id);
+            if (pack == null) {
+                throw new IllegalArgumentException("no object " + id);
+            }
+            return pack.open(id);
+        }
+        try {
+            InputStream in =
+                new BufferedInputStream(Files.newInputStream(file.toPath()),
+                                        BUFFER_SIZE);
+            int format = in.read();
+            if (format == FORMAT_RAW) {
+                return in;
+            } else if (format != FORMAT_DEFLATED) {
+                in.close();
+                throw new IllegalArgumentException("corrupt object: " + id);
+            }
+            return new InflaterInputStream(in);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException("no object " + id);
+        }
+    }
+
+    /** Returns the contents of the object with UID ID. */
+    byte[] read(String id) {
+        try (InputStream in = open(id)) {
+            return in.readAllBytes();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the contents of the object with UID ID to DEST, creating or
+     *  replacing it as needed.  The contents never pass through a heap
+     *  array unless they are a delta in a pack.  An existing DEST is
+     *  unlinked rather than overwritten, so that a file hard-linked to it
+     *  (see linkTo) is left alone. */
+    void copyTo(String id, File dest) {
+        if (dest.isDirectory()) {
+            throw new IllegalArgumentException("cannot overwrite directory");
+        }
+        File file = fileFor(id);
+        try {
+            Files.deleteIfExists(dest.toPath());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try (FileChannel out =
+                 FileChannel.open(dest.toPath(), StandardOpenOption.CREATE,
+                                  StandardOpenOption.WRITE,
+                                  StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (!file.isFile()) {
+                Pack pack = packFor(id);
+                if (pack == null) {
+                    throw new IllegalArgumentException("no object " + id);
+                }
+                pack.copyTo(id, out);
+                return;
+            }
+            try (FileChannel in =
+                     FileChannel.open(file.toPath(),
+                                      StandardOpenOption.READ)) {
+                ByteBuffer format = ByteBuffer.allocate(1);
+                in.read(format, 0);
+                if (format.get(0) == FORMAT_RAW) {
+                    transfer(in, 1, in.size() - 1, out);
+                } else if (format.get(0) == FORMAT_DEFLATED) {
+                    in.position(1);
+                    inflate(in, out);
+                } else {
+                    throw new IOException("corrupt object: " + id);
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Add the object with UID ID from SOURCE, another store, unless I
+     *  contain it already.  A loose object's file is copied as it is,
+     *  without being decompressed; a packed one is extracted to a
+     *  temporary file and stored afresh. */
+    void copyFrom(ObjectStore source, String id) {
+        if (contains(id)) {
+            return;
+        }
+        File tmp = tempFile();
+        if (source.isLoose(id)) {
+            try (FileChannel in =
+                     FileChannel.open(source.fileFor(id).toPath(),
+                                      StandardOpenOption.READ);
+                 FileChannel out =
+                     FileChannel.open(tmp.toPath(),
+                                      StandardOpenOption.WRITE)) {
+                transfer(in, 0, in.size(), out);
+            } catch (IOException excp) {
+                tmp.delete();
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            install(tmp, id);
+        } else {
+            try {
+                source.copyTo(id, tmp);
+                put(tmp);
+            } finally {
+                tmp.delete();
+            }
+        }
+    }
+
+    /** Add the objects of SOURCE, another store, with the UIDs in IDS,
+     *  none of which I contain, as a single new pack written in one pass.
+     *  Objects are delta-compressed in the order of IDS, as for pack. */
+    void receive(ObjectStore source, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Pack pack = Pack.write(source, new ArrayList<>(ids),
+                               join(_dir, PACK_DIR));
+        synchronized (this) {
+            packs().add(pack);
+        }
+    }
+
+    /** Make DEST, replacing any existing file, a hard link to a read-only
+     *  file in my LINK_DIR holding the contents of the object with UID ID,
+     *  creating that file first if need be.  Once it exists, this costs
+     *  no copying at all.  Since the link shares the cached file's
+     *  contents and permissions, it is read-only as well; replacing or
+     *  deleting it leaves the cached file intact.  Writing through a link
+     *  in place (as the owner of a read-only file may) changes the cached
+     *  file, however, so an existing one is rehashed first and rebuilt
+     *  from the object if it no longer matches ID.  Where hard links are
+     *  not supported, DEST is written with copyTo instead. */
+    void linkTo(String id, File dest) {
+        File cached = join(_dir, LINK_DIR, id);
+        try {
+            if (cached.isFile() && !sha1(cached).equals(id)) {
+                Files.delete(cached.toPath());
+            }
+            if (!cached.isFile()) {
+                File tmp = tempFile();
+                copyTo(id, tmp);
+                tmp.setWritable(false, false);
+                cached.getParentFile().mkdirs();
+                Files.move(tmp.toPath(), cached.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.deleteIfExists(dest.toPath());
+            Files.createLink(dest.toPath(), cached.toPath());
+        } catch (IOException | UnsupportedOperationException excp) {
+            copyTo(id, dest);
+        }
+    }
+
+    /** Transfer COUNT bytes of IN, starting at POSITION, to OUT, letting
+     *  the operating system move the data where it can. */
+    static void transfer(FileChannel in, long position, long count,
+                         WritableByteChannel out) throws IOException {
+        while (count > 0) {
+            long n = in.transferTo(position, count, out);
+            if (n <= 0 && position >= in.size()) {
+                throw new IOException("truncated object");
+            }
+            position += n;
+            count -= n;
+        }
+    }
+
+    /** Inflate the zlib stream read from IN, writing the result to OUT. */
+    static void inflate(ReadableByteChannel in, WritableByteChannel out)
+        throws IOException {
+        ByteBuffer input = INFLATE_BUFFERS.get()[0];
+        input.clear().flip();
+        inflate(input, in, out);
+    }
+
+    /** Inflate the zlib stream held in INPUT, followed by what can be read
+     *  from MORE if that is not null, writing the result to OUT.  Input
+     *  read from MORE is read into INPUT, which must then be a buffer of
+     *  this thread's INFLATE_BUFFERS. */
+    static void inflate(ByteBuffer input, ReadableByteChannel more,
+                        WritableByteChannel out) throws IOException {
+        ByteBuffer output = INFLATE_BUFFERS.get()[1];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    input.clear();
+                    if (more == null || more.read(input) < 0) {
+                        throw new IOException("truncated object");
+                    }
+                    input.flip();
+                    inflater.setInput(input);
+                }
+                output.clear();
+                inflater.inflate(output);
+                output.flip();
+                while (output.hasRemaining()) {
+                    out.write(output);
+                }
+                if (inflater.needsDictionary()) {
+                    throw new IOException("corrupt object");
+                }
+            }
+        } catch (DataFormatException excp) {
+            throw new IOException(excp.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Returns the UIDs of all my objects, in lexicographic order. */
+    List<String> ids() {
+        TreeSet<String> result = new TreeSet<>(looseIds());
+        for (Pack pack : packs()) {
+            result.addAll(pack.ids());
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Returns the UIDs of all my loose objects, in lexicographic order. */
+    List<String> looseIds() {
+        ArrayList<String> result = new ArrayList<>();
+        String[] fanout = _dir.list();
+        if (fanout == null) {
+            return result;
+        }
+        Arrays.sort(fanout);
+        for (String prefix : fanout) {
+            if (prefix.length() != 2) {
+                continue;
+            }
+            List<String> names = plainFilenamesIn(join(_dir, prefix));
+            if (names == null) {
+                continue;
+            }
+            for (String rest : names) {
+                if (prefix.length() + rest.length() == UID_LENGTH) {
+                    result.add(prefix + rest);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns my packs. */
+    synchronized List<Pack> packs() {
+        if (_packs == null) {
+            _packs = new ArrayList<>();
+            List<String> names = plainFilenamesIn(join(_dir, PACK_DIR));
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(".idx")) {
+                        _packs.add(new Pack(join(_dir, PACK_DIR, name)));
+                    }
+                }
+            }
+        }
+        return _packs;
+    }
+
+    /** Close my packs, so that they are looked up afresh when next
+     *  needed. */
+    synchronized void reset() {
+        if (_packs != null) {
+            for (Pack pack : _packs) {
+                pack.close();
+            }
+            _packs = null;
+        }
+    }
+
+    /** Returns the pack containing the object with UID ID, or null if it
+     *  is not packed. */
+    private Pack packFor(String id) {
+        for (Pack pack : packs()) {
+            if (pack.contains(id)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    /** Fold all my loose objects into a single new pack, storing objects
+     *  as deltas against similar ones where that saves space, and then
+     *  delete the loose copies.  ORDER lists UIDs in the order in which
+     *  they should be considered for delta compression (for example,
+     *  successive versions of each file); loose objects missing from
+     *  ORDER follow in UID order, and UIDs in ORDER that are not loose are
+     *  ignored.  Returns the number of objects packed. */
+    int pack(List<String> order) {
+        List<String> loose = looseIds();
+        if (loose.isEmpty()) {
+            return 0;
+        }
+        LinkedHashSet<String> ids = new LinkedHashSet<>();
+        HashSet<String> looseSet = new HashSet<>(loose);
+        for (String id : order) {
+            if (looseSet.contains(id)) {
+                ids.add(id);
+            }
+        }
+        ids.addAll(loose);
+        Pack pack = Pack.write(this, new ArrayList<>(ids),
+                               join(_dir, PACK_DIR));
+        synchronized (this) {
+            packs().add(pack);
+        }
+        for (String id : loose) {
+            File file = fileFor(id);
+            file.delete();
+            file.getParentFile().delete();
+        }
+        return ids.size();
+    }
+
+    /** A set of my objects, held as a bitmap over their positions: my
+     *  loose objects in UID order, followed by the objects of each of my
+     *  packs in the order of its index.  An object stored in more than one
+     *  place has a bit for each.  The bitmap takes one bit per stored
+     *  object; apart from it, only the UIDs of loose objects are held in
+     *  memory. */
+    class Bitmap {
+        /** An empty set of my objects as they are now stored. */
+        Bitmap() {
+            _loose = looseIds();
+            _packs = new ArrayList<>(packs());
+            _bases = new int[_packs.size() + 1];
+            _bases[0] = _loose.size();
+            for (int i = 0; i < _packs.size(); i += 1) {
+                _bases[i + 1] = _bases[i] + _packs.get(i).size();
+            }
+            _bits = new BitSet(_bases[_packs.size()]);
+        }
+
+        /** Add the object with UID ID.  Returns true iff it is stored and
+         *  was not already in me. */
+        boolean add(String id) {
+            boolean added = false;
+            int k = Collections.binarySearch(_loose, id);
+            if (k >= 0 && !_bits.get(k)) {
+                _bits.set(k);
+                added = true;
+            }
+            for (int i = 0; i < _packs.size(); i += 1) {
+                k = _packs.get(i).indexOf(id);
+                if (k >= 0 && !_bits.get(_bases[i] + k)) {
+                    _bits.set(_bases[i] + k);
+                    added = true;
+                }
+            }
+            return added;
+        }
+
+        /** Returns true iff the object with UID ID is in me. */
+        boolean contains(String id) {
+            int k = Collections.binarySearch(_loose, id);
+            if (k >= 0 && _bits.get(k)) {
+                return true;
+            }
+            for (int i = 0; i < _packs.size(); i += 1) {
+                k = _packs.get(i).indexOf(id);
+                if (k >= 0 && _bits.get(_bases[i] + k)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** The UIDs of the loose objects. */
+        private final List<String> _loose;
+        /** The packs. */
+        private final List<Pack> _packs;
+        /** The position of the first object of each pack, followed by the
+         *  total number of positions. */
+        private final int[] _bases;
+        /** The bitmap. */
+        private final BitSet _bits;
+    }
+
+    /** Delete my objects that are not in KEEP, which must describe my
+     *  objects as they are now stored.  Loose objects are deleted
+     *  outright.  The objects in KEEP from every pack holding any object
+     *  not in KEEP are copied, in their original order, into a single new
+     *  pack, and those packs are deleted.  Returns the number of objects
+     *  deleted. */
+    int sweep(Bitmap keep) {
+        int deleted = 0;
+        for (int k = 0; k < keep._loose.size(); k += 1) {
+            if (!keep._bits.get(k)) {
+                File file = fileFor(keep._loose.get(k));
+                file.delete();
+                file.getParentFile().delete();
+                deleted += 1;
+            }
+        }
+        List<Pack> dropped = new ArrayList<>();
+        LinkedHashSet<String> kept = new LinkedHashSet<>();
+        for (int i = 0; i < keep._packs.size(); i += 1) {
+            Pack pack = keep._packs.get(i);
+            int base = keep._bases[i];
+            int live = keep._bits.get(base, base + pack.size()).cardinality();
+            if (live == pack.size()) {
+                continue;
+            }
+            dropped.add(pack);
+            deleted += pack.size() - live;
+            for (int k : pack.entryOrder()) {
+                if (keep._bits.get(base + k)) {
+                    kept.add(pack.id(k));
+                }
+            }
+        }
+        if (dropped.isEmpty()) {
+            return deleted;
+        }
+        if (!kept.isEmpty()) {
+            Pack pack = Pack.write(this, new ArrayList<>(kept),
+                                   join(_dir, PACK_DIR));
+            synchronized (this) {
+                packs().add(pack);
+            }
+        }
+        synchronized (this) {
+            packs().removeAll(dropped);
+        }
+        for (Pack pack : dropped) {
+            pack.delete();
+        }
+        return deleted;
+    }
+
+    /** Delete the cached copies in my LINK_DIR (see linkTo) that are no
+     *  longer linked into any working directory, or whose objects are not
+     *  in KEEP, which must describe my objects as they are now stored.
+     *  Returns the number deleted. */
+    int pruneLinks(Bitmap keep) {
+        List<String> names = plainFilenamesIn(join(_dir, LINK_DIR));
+        if (names == null) {
+            return 0;
+        }
+        int deleted = 0;
+        for (String id : names) {
+            File cached = join(_dir, LINK_DIR, id);
+            int links;
+            try {
+                links = (Integer) Files.getAttribute(cached.toPath(),
+                                                     "unix:nlink");
+            } catch (IOException | UnsupportedOperationException excp) {
+                links = 1;
+            }
+            if ((links <= 1 || !keep.contains(id)) && cached.delete()) {
+                deleted += 1;
+            }
+        }
+        return deleted;
+    }
+
+    /** Returns a new, empty temporary file in my directory. */
+    private File tempFile() {
+        try {
+            init();
+            return File.createTempFile(TEMP_PREFIX, null, _dir);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Write the concatenation of CONTENTS, each of which is a byte array
+     *  or String, to OUT and close it.  Returns the number of bytes
+     *  written. */
+    private static long write(Object[] contents, OutputStream out)
+        throws IOException {
+        long size = 0;
+        try (out) {
+            for (Object obj : contents) {
+                byte[] bytes = obj instanceof byte[]
+                    ? (byte[]) obj
+                    : ((String) obj).getBytes(StandardCharsets.UTF_8);
+                out.write(bytes);
+                size += bytes.length;
+            }
+        }
+        return size;
+    }
+
+    /** Returns true iff the compressed object file FILE is appreciably
+     *  smaller than the SIZE bytes of contents it holds. */
+    private static boolean compresses(File file, long size) {
+        return (file.length() - 1) * 16 < size * 15;
+    }
+
+    /** Returns a stream that writes the format byte for uncompressed
+     *  contents and then everything written to it into FILE, replacing
+     *  its previous contents. */
+    private static OutputStream raw(File file) throws IOException {
+        OutputStream out = Files.newOutputStream(file.toPath());
+        out.write(FORMAT_RAW);
+        return out;
+    }
+
+    /** Returns a stream that writes the format byte and then compresses
+     *  everything written to it into FILE. */
+    private static OutputStream deflating(File file) throws IOException {
+        OutputStream out = Files.newOutputStream(file.toPath());
+        out.write(FORMAT_DEFLATED);
+        return new DeflaterOutputStream(out, new Deflater(), BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                super.close();
+                def.end();
+            }
+        };
+    }
+
+    /** Move the completed object file TMP into place as object ID. */
+    private void install(File tmp, String id) {
+        File dest = fileFor(id);
+        dest.getParentFile().mkdirs();
+        try {
+            Files.move(tmp.toPath(), dest.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            tmp.delete();
+            if (!dest.isFile()) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        synchronized (_written) {
+            _written.add(dest);
+        }
+    }
+
+    /** Returns the object files I have written since the last call, and
+     *  forget them.  They have not been flushed to disk; the caller is
+     *  expected to do so, all at once, before anything refers to them. */
+    List<File> takeWritten() {
+        synchronized (_written) {
+            List<File> result = new ArrayList<>(_written);
+            _written.clear();
+            return result;
+        }
+    }
+
+    /** For each thread, the direct buffers through which it inflates
+     *  input and output. */
+    private static final ThreadLocal<ByteBuffer[]> INFLATE_BUFFERS =
+        ThreadLocal.withInitial(() -> new ByteBuffer[] {
+            ByteBuffer.allocateDirect(BUFFER_SIZE),
+            ByteBuffer.allocateDirect(BUFFER_SIZE)
+        });
+
+    /** The directory holding my objects. */
+    private final File _dir;
+    /** My packs, loaded when first needed. */
+    private List<Pack> _packs;
+    /** Object files written and not yet reported by takeWritten. */
+    private final List<File> _written = new ArrayList<>();
+}
@@ -0,0 +1,685 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static gitlet.Utils.*;
+
+/** A packfile: many objects of an ObjectStore folded into a single file,
+ *  with an index for finding them.  A pack NAME consists of the files
+ *  NAME.pack and NAME.idx.
+ *
+ *  The pack file starts with PACK_MAGIC and holds a sequence of entries,
+ *  each of which is
+ *
+ *      type (1 byte)             FULL, RAW, or DELTA
+ *      base offset (8 bytes)     DELTA only: offset of the base entry
+ *      length (8 bytes)          length of the following payload
+ *      payload                   zlib-compressed object contents (FULL),
+ *                                uncompressed contents (RAW), or
+ *                                compressed Delta from the base (DELTA)
+ *
+ *  Packs of version 1 (the last byte of the magic) had 4-byte lengths, and
+ *  are still read.  Whole entries are read and written as streams, so
+ *  neither packs nor the objects in them are limited to 2 GiB.
+ *
+ *  The index file starts with INDEX_MAGIC, followed by a 256-entry fan-out
+ *  table whose Kth entry is the number of objects whose UIDs begin with a
+ *  byte of at most K, the sorted raw UIDs of all objects (20 bytes each),
+ *  and the offset of each object's entry in the pack (8 bytes each, in the
+ *  same order).  The index is memory-mapped, so a lookup is a binary
+ *  search over one fan-out bucket and touches only a few pages.
+ *
+ *  An index is written only after its pack is complete, so a pack without
+ *  an index is ignored.
+ */
+class Pack {
+
+    /** Leading bytes of a pack file. */
+    private static final byte[] PACK_MAGIC = { 'G', 'L', 'P', 2 };
+    /** Leading bytes of an index file. */
+    private static final byte[] INDEX_MAGIC = { 'G', 'L', 'I', 1 };
+
+    /** Entry type of an object stored whole. */
+    private static final int FULL = 1;
+    /** Entry type of an object stored as a delta against another entry. */
+    private static final int DELTA = 2;
+    /** Entry type of an object stored whole and uncompressed. */
+    private static final int RAW = 3;
+
+    /** Number of preceding objects tried as delta bases for each object. */
+    private static final int WINDOW = 10;
+    /** Most bytes of contents held by the delta bases under consideration;
+     *  the oldest bases are dropped, even if fewer than WINDOW remain, to
+     *  stay within it. */
+    private static final long WINDOW_BYTES = 32 << 20;
+    /** Longest chain of deltas that must be followed to read an object. */
+    private static final int MAX_DEPTH = 16;
+    /** Objects larger than this are always stored whole. */
+    private static final int MAX_DELTA_SIZE = 16 << 20;
+
+    /** Offset of the fan-out table in an index. */
+    private static final int FANOUT = INDEX_MAGIC.length;
+    /** Offset of the sorted UIDs in an index. */
+    private static final int IDS = FANOUT + 256 * 4;
+
+    /** The pack whose index file is INDEX. */
+    Pack(File index) {
+        String name = index.getName();
+        _packFile = new File(index.getParentFile(),
+                             name.substring(0, name.length() - 4) + ".pack");
+        try (FileChannel channel =
+                 FileChannel.open(index.toPath(), StandardOpenOption.READ)) {
+            _index = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                 channel.size());
+            _pack = FileChannel.open(_packFile.toPath(),
+                                     StandardOpenOption.READ);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        for (int i = 0; i < INDEX_MAGIC.length; i += 1) {
+            if (_index.get(i) != INDEX_MAGIC[i]) {
+                throw new IllegalArgumentException("bad pack index " + index);
+            }
+        }
+        _size = _index.getInt(FANOUT + 255 * 4);
+        try {
+            ByteBuffer magic = readAt(0, PACK_MAGIC.length);
+            int version = magic.get(PACK_MAGIC.length - 1);
+            for (int i = 0; i < PACK_MAGIC.length - 1; i += 1) {
+                if (magic.get(i) != PACK_MAGIC[i]) {
+                    version = 0;
+                }
+            }
+            if (version < 1 || version > PACK_MAGIC[PACK_MAGIC.length - 1]) {
+                throw new IllegalArgumentException("bad pack " + _packFile);
+            }
+            _lengthBytes = version == 1 ? 4 : 8;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the number of objects in me. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns the UID of my Kth object in UID order. */
+    String id(int k) {
+        byte[] raw = new byte[UID_BYTES];
+        _index.get(IDS + k * UID_BYTES, raw);
+        return toHex(raw);
+    }
+
+    /** Returns the UIDs of all my objects, in order. */
+    List<String> ids() {
+        ArrayList<String> result = new ArrayList<>(_size);
+        for (int k = 0; k < _size; k += 1) {
+            result.add(id(k));
+        }
+        return result;
+    }
+
+    /** Returns true iff I contain the object with UID ID. */
+    boolean contains(String id) {
+        return find(id) >= 0;
+    }
+
+    /** Returns the position of the object with UID ID in the order of
+     *  UIDs (as for id), or -1 if I do not contain it. */
+    int indexOf(String id) {
+        return find(id);
+    }
+
+    /** Returns the positions in UID order of all my objects, in the order
+     *  of their entries in the pack file, which is the order in which they
+     *  were offered for delta compression. */
+    List<Integer> entryOrder() {
+        List<Integer> result = new ArrayList<>(_size);
+        for (int k = 0; k < _size; k += 1) {
+            result.add(k);
+        }
+        result.sort(Comparator.comparingLong(this::offset));
+        return result;
+    }
+
+    /** Close me and delete my files, the index first, so that I am never
+     *  seen without my pack file. */
+    void delete() {
+        close();
+        File index = new File(_packFile.getParentFile(),
+                              _packFile.getName().replace(".pack", ".idx"));
+        index.delete();
+        _packFile.delete();
+    }
+
+    /** Returns the pack file holding my entries. */
+    File packFile() {
+        return _packFile;
+    }
+
+    /** Returns a stream of the contents of the object with UID ID, or null
+     *  if I do not contain it.  Whole objects are inflated as they are read
+     *  straight out of the pack; deltas are resolved in memory. */
+    InputStream open(String id) {
+        int k = find(id);
+        if (k < 0) {
+            return null;
+        }
+        try {
+            long offset = offset(k);
+            int type = readAt(offset, 1).get(0);
+            if (type == FULL) {
+                return new InflaterInputStream(range(offset));
+            } else if (type == RAW) {
+                return range(offset);
+            }
+            return new ByteArrayInputStream(resolve(offset, 0));
+        } catch (IOException | DataFormatException excp) {
+            throw new IllegalArgumentException("corrupt pack "
+                                               + _packFile.getName());
+        }
+    }
+
+    /** Write the contents of the object with UID ID, which I must
+     *  contain, to OUT.  Whole objects are inflated straight out of the
+     *  pack, or transferred without copying if stored uncompressed; deltas
+     *  are resolved in memory. */
+    void copyTo(String id, WritableByteChannel out) throws IOException {
+        int k = find(id);
+        if (k < 0) {
+            throw new IllegalArgumentException("no object " + id);
+        }
+        long offset = offset(k);
+        int type = readAt(offset, 1).get(0);
+        if (type == FULL) {
+            ObjectStore.inflate(Channels.newChannel(range(offset)), out);
+        } else if (type == RAW) {
+            ObjectStore.transfer(_pack, offset + 1 + _lengthBytes,
+                                 length(offset + 1), out);
+        } else {
+            try {
+                ByteBuffer body = ByteBuffer.wrap(resolve(offset, 0));
+                while (body.hasRemaining()) {
+                    out.write(body);
+                }
+            } catch (DataFormatException excp) {
+                throw new IOException("corrupt pack " + _packFile.getName());
+            }
+        }
+    }
+
+    /** Returns the number of bytes the object with UID ID, which I must
+     *  contain, occupies in me. */
+    long storedSize(String id) {
+        long offset = offset(find(id));
+        try {
+            int type = readAt(offset, 1).get(0);
+            return length(offset + 1 + (type == DELTA ? 8 : 0));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Release the files I hold open. */
+    void close() {
+        try {
+            _pack.close();
+        } catch (IOException excp) {
+            /* Ignore */
+        }
+    }
+
+    /** Returns the index of the UID ID among my sorted UIDs, or -1 if it
+     *  is absent. */
+    private int find(String id) {
+        byte[] raw = fromHex(id);
+        int first = raw[0] & 0xff;
+        int lo = first == 0 ? 0 : _index.getInt(FANOUT + (first - 1) * 4),
+            hi = _index.getInt(FANOUT + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compareId(mid, raw);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Compare my Kth UID with the raw UID RAW. */
+    private int compareId(int k, byte[] raw) {
+        int base = IDS + k * UID_BYTES;
+        for (int i = 0; i < UID_BYTES; i += 1) {
+            int c = (_index.get(base + i) & 0xff) - (raw[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the pack offset of the entry of my Kth object. */
+    private long offset(int k) {
+        return _index.getLong(IDS + _size * UID_BYTES + k * 8);
+    }
+
+    /** Returns the contents of the object whose entry is at OFFSET, which
+     *  is at delta depth DEPTH from the object originally requested. */
+    private byte[] resolve(long offset, int depth)
+        throws IOException, DataFormatException {
+        if (depth > MAX_DEPTH) {
+            throw new IOException("delta chain too long");
+        }
+        int type = readAt(offset, 1).get(0);
+        if (type == RAW) {
+            ByteBuffer payload = payload(offset);
+            byte[] body = new byte[payload.remaining()];
+            payload.get(body);
+            return body;
+        }
+        byte[] body = inflate(payload(offset));
+        if (type == FULL) {
+            return body;
+        }
+        long base = readAt(offset + 1, 8).getLong(0);
+        return Delta.apply(resolve(base, depth + 1), body);
+    }
+
+    /** Returns a buffer mapping the payload of the entry at OFFSET, which
+     *  must be shorter than 2 GiB. */
+    private ByteBuffer payload(long offset) throws IOException {
+        int type = readAt(offset, 1).get(0);
+        long start = offset + 1 + (type == DELTA ? 8 : 0);
+        long len = length(start);
+        if (len > Integer.MAX_VALUE) {
+            throw new IOException("pack entry too large");
+        }
+        return _pack.map(FileChannel.MapMode.READ_ONLY, start + _lengthBytes,
+                         len);
+    }
+
+    /** Returns a stream of the payload of the FULL or RAW entry at
+     *  OFFSET, read from my pack file as it is consumed. */
+    private InputStream range(long offset) throws IOException {
+        long len = length(offset + 1);
+        return new RangeInputStream(_pack, offset + 1 + _lengthBytes, len);
+    }
+
+    /** Returns the payload length stored at offset AT of my pack. */
+    private long length(long at) throws IOException {
+        ByteBuffer buf = readAt(at, _lengthBytes);
+        return _lengthBytes == 4 ? buf.getInt(0) & 0xffffffffL
+            : buf.getLong(0);
+    }
+
+    /** Returns a buffer holding the LEN bytes of my pack at OFFSET. */
+    private ByteBuffer readAt(long offset, int len) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        while (buf.hasRemaining()) {
+            if (_pack.read(buf, offset + buf.position()) < 0) {
+                throw new IOException("truncated pack");
+            }
+        }
+        return buf;
+    }
+
+    /** Returns the inflated contents of COMPRESSED. */
+    private static byte[] inflate(ByteBuffer compressed)
+        throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream out =
+                new ByteArrayOutputStream(compressed.remaining() * 2);
+            byte[] buf = new byte[1 << 16];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("truncated entry");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Write the objects of STORE with the UIDs in IDS into a new pack in
+     *  directory DIR, and return it.  The pack is flushed to disk before
+     *  this returns, so the caller may then delete the loose copies.
+     *  Objects are considered for delta compression in the order of IDS,
+     *  each against the WINDOW objects before it (fewer if they hold more
+     *  than WINDOW_BYTES between them), so IDS should place similar
+     *  objects (such as successive versions of one file) near each other. */
+    static Pack write(ObjectStore store, List<String> ids, File dir) {
+        String[] sorted = ids.toArray(new String[0]);
+        Arrays.sort(sorted);
+        String name = "pack-" + sha1((Object[]) sorted);
+        File packFile = join(dir, name + ".pack"),
+            indexFile = join(dir, name + ".idx");
+        dir.mkdirs();
+        long[] offsets = new long[sorted.length];
+        try {
+            File tmp = File.createTempFile("tmp-", ".pack", dir);
+            try (FileChannel channel =
+                     FileChannel.open(tmp.toPath(),
+                                      StandardOpenOption.WRITE)) {
+                Output out = new Output(channel);
+                out.data().write(PACK_MAGIC);
+                writeEntries(store, ids, sorted, offsets, out);
+                out.data().flush();
+            }
+            Transaction.force(List.of(tmp));
+            Files.move(tmp.toPath(), packFile.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+            tmp = File.createTempFile("tmp-", ".idx", dir);
+            try (DataOutputStream out =
+                     new DataOutputStream(new BufferedOutputStream(
+                         Files.newOutputStream(tmp.toPath())))) {
+                writeIndex(sorted, offsets, out);
+            }
+            Transaction.force(List.of(tmp));
+            Files.move(tmp.toPath(), indexFile.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+            Transaction.forceDirectory(dir);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return new Pack(indexFile);
+    }
+
+    /** A candidate delta base: the contents of an object already written,
+     *  the offset of its entry, and the length of its delta chain. */
+    private static class Base {
+        /** A base with contents BODY at OFFSET with delta depth DEPTH. */
+        Base(byte[] body, long offset, int depth) {
+            this.body = body;
+            this.offset = offset;
+            this.depth = depth;
+        }
+
+        /** Contents of the object. */
+        final byte[] body;
+        /** Offset of the object's entry. */
+        final long offset;
+        /** Number of deltas to follow to read the object. */
+        final int depth;
+    }
+
+    /** Write entries for the objects of STORE with UIDs in IDS to OUT,
+     *  which has already received the pack header, recording the offset of
+     *  the entry for SORTED[k] in OFFSETS[k]. */
+    private static void writeEntries(ObjectStore store, List<String> ids,
+                                     String[] sorted, long[] offsets,
+                                     Output out)
+        throws IOException {
+        ArrayDeque<Base> window = new ArrayDeque<>();
+        long windowBytes = 0;
+        for (String id : ids) {
+            long offset = out.position();
+            offsets[Arrays.binarySearch(sorted, id)] = offset;
+            byte[] body = readSmall(store, id);
+            if (body == null) {
+                writeFull(store, id, null, out);
+                continue;
+            }
+            Base best = null;
+            byte[] bestDelta = null;
+            for (Iterator<Base> it = window.descendingIterator();
+                 it.hasNext();) {
+                Base base = it.next();
+                if (base.depth >= MAX_DEPTH) {
+                    continue;
+                }
+                byte[] delta = Delta.create(base.body, body);
+                if (delta.length < body.length / 2
+                    && (bestDelta == null || delta.length < bestDelta.length)) {
+                    best = base;
+                    bestDelta = delta;
+                }
+            }
+            int depth = 0;
+            if (best == null) {
+                writeFull(store, id, body, out);
+            } else {
+                out.data().writeByte(DELTA);
+                out.data().writeLong(best.offset);
+                writePayload(deflate(bestDelta), out);
+                depth = best.depth + 1;
+            }
+            window.addLast(new Base(body, offset, depth));
+            windowBytes += body.length;
+            while (window.size() > WINDOW || windowBytes > WINDOW_BYTES) {
+                windowBytes -= window.removeFirst().body.length;
+            }
+        }
+    }
+
+    /** Returns the contents of the object ID of STORE, or null if they
+     *  are longer than MAX_DELTA_SIZE.  Only MAX_DELTA_SIZE + 1 bytes of a
+     *  longer object are read. */
+    private static byte[] readSmall(ObjectStore store, String id)
+        throws IOException {
+        try (InputStream in = store.open(id)) {
+            byte[] body = in.readNBytes(MAX_DELTA_SIZE + 1);
+            return body.length > MAX_DELTA_SIZE ? null : body;
+        }
+    }
+
+    /** Write a FULL or RAW entry for the object ID of STORE, whose
+     *  contents are BODY (or null if they have not been read), to OUT.  The
+     *  stored contents of a loose object, compressed or not, are copied
+     *  verbatim; the contents of any other object not already read are
+     *  compressed as they are streamed into OUT. */
+    private static void writeFull(ObjectStore store, String id, byte[] body,
+                                  Output out) throws IOException {
+        DataOutputStream data = out.data();
+        if (store.isLoose(id)) {
+            File loose = store.fileFor(id);
+            try (InputStream in = Files.newInputStream(loose.toPath())) {
+                int format = in.read();
+                data.writeByte(format == ObjectStore.FORMAT_RAW ? RAW : FULL);
+                data.writeLong(loose.length() - 1);
+                in.transferTo(data);
+            }
+            return;
+        }
+        data.writeByte(FULL);
+        if (body != null) {
+            writePayload(deflate(body), out);
+            return;
+        }
+        long at = out.position();
+        data.writeLong(0);
+        Deflater deflater = new Deflater();
+        try (InputStream in = store.open(id)) {
+            DeflaterOutputStream def =
+                new DeflaterOutputStream(data, deflater, 1 << 16);
+            in.transferTo(def);
+            def.finish();
+        } finally {
+            deflater.end();
+        }
+        out.patchLong(at, out.position() - at - 8);
+    }
+
+    /** Write PAYLOAD, preceded by its length, to OUT. */
+    private static void writePayload(byte[] payload, Output out)
+        throws IOException {
+        out.data().writeLong(payload.length);
+        out.data().write(payload);
+    }
+
+    /** Returns DATA compressed with zlib. */
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out =
+                new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buf = new byte[1 << 16];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /** Write the index of a pack whose objects have the UIDs in SORTED
+     *  and entries at the corresponding OFFSETS to OUT. */
+    private static void writeIndex(String[] sorted, long[] offsets,
+                                   DataOutputStream out) throws IOException {
+        out.write(INDEX_MAGIC);
+        int[] fanout = new int[256];
+        for (String id : sorted) {
+            fanout[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+        }
+        int total = 0;
+        for (int count : fanout) {
+            total += count;
+            out.writeInt(total);
+        }
+        for (String id : sorted) {
+            writeUid(out, id);
+        }
+        for (long offset : offsets) {
+            out.writeLong(offset);
+        }
+    }
+
+    /** An InputStream over a range of bytes of a FileChannel, read with
+     *  positional reads so that the channel may be shared. */
+    private static class RangeInputStream extends InputStream {
+        /** A stream over the LEN bytes of CHANNEL starting at START. */
+        RangeInputStream(FileChannel channel, long start, long len) {
+            _channel = channel;
+            _pos = start;
+            _end = start + len;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (_pos >= _end) {
+                return -1;
+            }
+            len = (int) Math.min(len, _end - _pos);
+            int n = _channel.read(ByteBuffer.wrap(b, off, len), _pos);
+            if (n < 0) {
+                throw new IOException("truncated pack");
+            }
+            _pos += n;
+            return n;
+        }
+
+        /** The channel read. */
+        private final FileChannel _channel;
+        /** The position of the next byte to read, and the end of the
+         *  range. */
+        private long _pos, _end;
+    }
+
+    /** The stream to which a pack is written, which counts the bytes
+     *  written in a long and can patch bytes already written. */
+    private static class Output {
+        /** A stream writing to CHANNEL, which must be empty. */
+        Output(FileChannel channel) {
+            _channel = channel;
+            _data = new DataOutputStream(new FilterOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel),
+                                         1 << 16)) {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        _position += 1;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len)
+                        throws IOException {
+                        out.write(b, off, len);
+                        _position += len;
+                    }
+                });
+        }
+
+        /** Returns the stream through which to write. */
+        DataOutputStream data() {
+            return _data;
+        }
+
+        /** Returns the number of bytes written so far. */
+        long position() {
+            return _position;
+        }
+
+        /** Overwrite the 8 bytes written at position AT with VALUE. */
+        void patchLong(long at, long value) throws IOException {
+            _data.flush();
+            ByteBuffer buf = ByteBuffer.allocate(8).putLong(0, value);
+            while (buf.hasRemaining()) {
+                _channel.write(buf, at + buf.position());
+            }
+        }
+
+        /** The channel written. */
+        private final FileChannel _channel;
+        /** The stream written. */
+        private final DataOutputStream _data;
+        /** The number of bytes written. */
+        private long _position;
+    }
+
+    /** The mapped index file. */
+    private final MappedByteBuffer _index;
+    /** The pack file. */
+    private final File _packFile;
+    /** Open channel on the pack file. */
+    private final FileChannel _pack;
+    /** Number of objects in this pack. */
+    private final int _size;
+    /** Number of bytes in the length of an entry's payload. */
+    private final int _lengthBytes;
+}
@@ -0,0 +1,162 @@
+package gitlet;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static gitlet.Utils.*;
+
+/** Another Gitlet repository on the local file system, named by the path
+ *  of its .gitlet directory, from which objects and branch heads are
+ *  fetched and to which they are pushed.  Its layout is that described
+ *  in Repository. */
+class Remote {
+
+    /** The repository whose .gitlet directory is DIR. */
+    Remote(File dir) {
+        _dir = dir;
+        _blobs = new ObjectStore(join(dir, "objects"));
+        _commits = new ObjectStore(join(dir, "commits"));
+        _trees = new ObjectStore(join(dir, "trees"));
+    }
+
+    /** Returns true iff my .gitlet directory exists. */
+    boolean exists() {
+        return _dir.isDirectory();
+    }
+
+    /** Returns my .gitlet directory. */
+    File dir() {
+        return _dir;
+    }
+
+    /** Returns my store of blobs. */
+    ObjectStore blobs() {
+        return _blobs;
+    }
+
+    /** Returns my store of commits. */
+    ObjectStore commits() {
+        return _commits;
+    }
+
+    /** Returns my store of trees. */
+    ObjectStore trees() {
+        return _trees;
+    }
+
+    /** Returns my commit graph, rebuilding it if its file is missing. */
+    CommitGraph graph() {
+        if (_graph == null) {
+            _graph = new CommitGraph(join(_dir, "commit-graph"));
+            if (!_graph.exists() && _commits.dir().isDirectory()) {
+                _graph.rebuild(_commits);
+            }
+        }
+        return _graph;
+    }
+
+    /** Add COMMITS, whose UIDs are IDS and which are already on disk in my
+     *  store of commits, to my commit graph and to those of my indices of
+     *  commits that exist, and write them to disk.  A missing index is left
+     *  for my own commands to rebuild. */
+    void addCommits(List<String> ids, List<Commit> commits) {
+        IdIndex uids = new IdIndex(join(_dir, "commit-ids")),
+            messages = new IdIndex(join(_dir, "commit-messages"),
+                                   2 * UID_BYTES);
+        for (int i = 0; i < ids.size(); i += 1) {
+            graph().add(ids.get(i), commits.get(i));
+            if (uids.exists()) {
+                uids.add(ids.get(i));
+            }
+            if (messages.exists()) {
+                messages.add(Repository.messageKey(commits.get(i).message())
+                             + ids.get(i));
+            }
+        }
+        graph().flush();
+        if (uids.exists()) {
+            uids.flush();
+        }
+        if (messages.exists()) {
+            messages.flush();
+        }
+    }
+
+    /** Returns the file holding the head of my branch NAME. */
+    File branchFile(String name) {
+        return join(_dir, "refs", "heads", name);
+    }
+
+    /** Returns the UID of the head of my branch NAME, or null if I have no
+     *  such branch. */
+    String branchHead(String name) {
+        File file = branchFile(name);
+        return file.isFile() ? readContentsAsString(file) : null;
+    }
+
+    /** Returns the name of my current branch. */
+    String currentBranch() {
+        return readContentsAsString(join(_dir, "HEAD"));
+    }
+
+    /** Returns my staging area. */
+    Index index() {
+        return Index.read(join(_dir, "index"));
+    }
+
+    /** Returns the snapshot of my commit with UID ID: a map from the names
+     *  of the files it tracks to the UIDs of their blobs. */
+    SortedMap<String, ObjectId> snapshot(String id) {
+        Commit commit = Commit.decode(_commits.read(id));
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        Tree legacy = commit.legacyTree();
+        walkTree(legacy != null ? legacy : readTree(commit.tree()), "",
+                 result);
+        return result;
+    }
+
+    /** Make ID the head of my branch NAME.  If INDEX is not null, it
+     *  replaces my staging area as well, so that my next commit starts
+     *  from ID.  The files are replaced atomically and durably, after
+     *  everything they refer to has been added (see addCommits), so a push
+     *  interrupted at any point leaves my branch either as it was or fully
+     *  updated. */
+    void setBranchHead(String name, String id, Index index) {
+        Transaction txn = new Transaction(_dir);
+        txn.write(branchFile(name), id);
+        if (index != null) {
+            index.write(txn, join(_dir, "index"));
+        }
+        txn.commit();
+    }
+
+    /** Returns my tree with UID ID. */
+    private Tree readTree(ObjectId id) {
+        return Tree.decode(_trees.read(id.toString()));
+    }
+
+    /** Add the files in TREE, which represents directory DIR, to BLOBS,
+     *  mapping their names to their blobs' UIDs. */
+    private void walkTree(Tree tree, String dir,
+                          Map<String, ObjectId> blobs) {
+        String prefix = dir.isEmpty() ? "" : dir + "/";
+        for (Map.Entry<String, Tree.Entry> e : tree.entries().entrySet()) {
+            String name = prefix + e.getKey();
+            if (e.getValue().isTree()) {
+                walkTree(readTree(e.getValue().id), name, blobs);
+            } else {
+                blobs.put(name, e.getValue().id);
+            }
+        }
+    }
+
+    /** My .gitlet directory. */
+    private final File _dir;
+    /** My stores of blobs, commits, and trees. */
+    private final ObjectStore _blobs, _commits, _trees;
+    /** My commit graph, once opened. */
+    private CommitGraph _graph;
+}
@@ -1,29 +1,1783 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import static gitlet.Utils.*;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Formatter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
-// TODO: any imports you need here
+import static gitlet.Utils.*;
 
-/** Represents a gitlet repository.
- *  TODO: It's a good idea to give a description here of what else this Class
- *  does at a high level.
+/** Represents a gitlet repository: the .gitlet directory in the current
+ *  working directory, and the commands that operate on it.
  *
- *  @author TODO
+ *  The .gitlet directory holds
+ *      objects/       the blobs, in an ObjectStore
+ *      commits/       the commits, in an ObjectStore
+ *      trees/         the trees of the commits' snapshots, in an
+ *                     ObjectStore
+ *      refs/heads/    one file per branch, holding its head commit's UID
+ *      HEAD           the name of the current branch
+ *      config         settings, one NAME=VALUE per line (see config)
+ *      index          the staging area (see Index)
+ *      commit-graph   parents and generation numbers (see CommitGraph)
+ *      commit-ids     sorted commit UIDs, for abbreviations (see IdIndex)
+ *      commit-messages
+ *                     pairs of message hashes and commit UIDs, for find
+ *      shallow        the UIDs of grafted commits, whose parents were not
+ *                     fetched (see fetch)
+ *      journal        present only while committing updates to the above
+ *                     (see Transaction)
  */
 public class Repository {
-    /**
-     * TODO: add instance variables here.
-     *
-     * List all instance variables of the Repository class here with a useful
-     * comment above them describing what that variable represents and how that
-     * variable is used. We've provided two examples for you.
-     */
 
     /** The current working directory. */
     public static final File CWD = new File(System.getProperty("user.dir"));
     /** The .gitlet directory. */
     public static final File GITLET_DIR = join(CWD, ".gitlet");
+    /** The directory holding file contents (blobs), fanned out by the
+     *  first two digits of their UIDs. */
+    static final File OBJECTS_DIR = join(GITLET_DIR, "objects");
+    /** The store of blobs kept in OBJECTS_DIR. */
+    static final ObjectStore BLOBS = new ObjectStore(OBJECTS_DIR);
+    /** The directory holding encoded commits, laid out as OBJECTS_DIR. */
+    static final File COMMITS_DIR = join(GITLET_DIR, "commits");
+    /** The store of commits kept in COMMITS_DIR. */
+    static final ObjectStore COMMITS = new ObjectStore(COMMITS_DIR);
+    /** The directory holding encoded trees, laid out as OBJECTS_DIR. */
+    static final File TREES_DIR = join(GITLET_DIR, "trees");
+    /** The store of trees kept in TREES_DIR. */
+    static final ObjectStore TREES = new ObjectStore(TREES_DIR);
+    /** The directory holding one file per branch. */
+    static final File HEADS_DIR = join(GITLET_DIR, "refs", "heads");
+    /** The file holding the name of the current branch. */
+    static final File HEAD_FILE = join(GITLET_DIR, "HEAD");
+    /** The file holding the repository's settings. */
+    static final File CONFIG_FILE = join(GITLET_DIR, "config");
+    /** The file holding the staging area. */
+    static final File INDEX_FILE = join(GITLET_DIR, "index");
+    /** The file holding the commit graph. */
+    static final File GRAPH_FILE = join(GITLET_DIR, "commit-graph");
+    /** The file holding the index of commit UIDs. */
+    static final File ID_INDEX_FILE = join(GITLET_DIR, "commit-ids");
+    /** The file holding the index of commit messages. */
+    static final File MESSAGE_INDEX_FILE =
+        join(GITLET_DIR, "commit-messages");
+    /** The file listing grafted commits. */
+    static final File SHALLOW_FILE = join(GITLET_DIR, "shallow");
+
+    /** Recently read commits, decoded. */
+    static final ObjectCache<Commit> COMMIT_CACHE =
+        new ObjectCache<>("commits", 8 << 20);
+    /** Recently read trees, decoded. */
+    static final ObjectCache<Tree> TREE_CACHE =
+        new ObjectCache<>("trees", 8 << 20);
+    /** Recently read blobs. */
+    static final ObjectCache<byte[]> BLOB_CACHE =
+        new ObjectCache<>("blobs", 64 << 20);
+    /** Estimated size in bytes of a decoded commit, beyond that of its
+     *  encoding. */
+    private static final int COMMIT_OVERHEAD = 256;
+    /** Estimated size in bytes of each entry of a decoded tree, beyond
+     *  that of its encoding. */
+    private static final int TREE_ENTRY_OVERHEAD = 96;
+
+    /** Blobs whose stored size is at most this many bytes are always
+     *  copied into the working directory, never linked. */
+    private static final long LINK_THRESHOLD = 1 << 16;
+
+    /** Prefix of the settings naming remotes. */
+    private static final String REMOTE_PREFIX = "remote.";
+
+    /** The name of the branch created by init. */
+    static final String DEFAULT_BRANCH = "master";
+
+    /** Store COMMIT and add it to the commit graph and the indices of
+     *  commits, returning its UID.  They are opened first, so that any of
+     *  them rebuilt from the stored commits does not name COMMIT before it
+     *  is on disk. */
+    static String writeCommit(Commit commit) {
+        graph();
+        commitIds();
+        messageIndex();
+        String id = COMMITS.put((Object) commit.encode());
+        indexCommit(id, commit, false);
+        return id;
+    }
+
+    /** Add COMMIT, whose UID is ID and which is already stored, to the
+     *  commit graph and the indices of commits.  If GRAFT, it is added to
+     *  the graph as a root (see CommitGraph.add).  They are written when
+     *  the transaction commits (see flushIndices). */
+    private static void indexCommit(String id, Commit commit, boolean graft) {
+        graph().add(id, commit, graft);
+        commitIds().add(id);
+        messageIndex().add(messageKey(commit.message()) + id);
+    }
+
+    /** Returns the index of commit messages, which holds, for each commit,
+     *  its message's key (see messageKey) followed by its UID.  It is
+     *  rebuilt from the stored commits if its file is missing. */
+    static IdIndex messageIndex() {
+        if (_messages == null) {
+            _messages = new IdIndex(MESSAGE_INDEX_FILE, 2 * UID_BYTES);
+            if (!_messages.exists() && COMMITS.dir().isDirectory()) {
+                _messages.rebuild(messageKeys());
+            }
+        }
+        return _messages;
+    }
+
+    /** Returns the keys of the index of commit messages for all stored
+     *  commits. */
+    private static List<String> messageKeys() {
+        List<String> keys = new ArrayList<>();
+        for (String id : COMMITS.ids()) {
+            keys.add(messageKey(readCommit(id).message()) + id);
+        }
+        return keys;
+    }
+
+    /** Returns the key of MESSAGE in the index of commit messages: the
+     *  SHA-1 hash of its UTF-8 encoding. */
+    static String messageKey(String message) {
+        return sha1(message);
+    }
+
+    /** Returns the index of commit UIDs, rebuilding it from the stored
+     *  commits if its file is missing. */
+    static IdIndex commitIds() {
+        if (_commitIds == null) {
+            _commitIds = new IdIndex(ID_INDEX_FILE);
+            if (!_commitIds.exists() && COMMITS.dir().isDirectory()) {
+                _commitIds.rebuild(COMMITS.ids());
+            }
+        }
+        return _commitIds;
+    }
+
+    /** Returns the commit graph, rebuilding it from the stored commits if
+     *  its file is missing. */
+    static CommitGraph graph() {
+        if (_graph == null) {
+            _graph = new CommitGraph(GRAPH_FILE);
+            if (!_graph.exists() && COMMITS.dir().isDirectory()) {
+                _graph.rebuild(COMMITS);
+            }
+        }
+        return _graph;
+    }
+
+    /** Returns the commit with UID ID, from COMMIT_CACHE if possible. */
+    static Commit readCommit(String id) {
+        return readCommit(ObjectId.fromHex(id));
+    }
+
+    /** Returns the commit with UID ID, from COMMIT_CACHE if possible. */
+    static Commit readCommit(ObjectId id) {
+        Commit commit = COMMIT_CACHE.get(id);
+        if (commit == null) {
+            byte[] encoded = COMMITS.read(id.toString());
+            commit = Commit.decode(encoded);
+            storeLegacyTree(commit);
+            COMMIT_CACHE.put(id, commit, COMMIT_OVERHEAD + encoded.length);
+        }
+        return commit;
+    }
+
+    /** Store the root tree of COMMIT, if COMMIT was decoded from a version
+     *  1 encoding (see Commit.legacyTree) and the tree is not already
+     *  stored, so that COMMIT's snapshot can be read like any other. */
+    private static void storeLegacyTree(Commit commit) {
+        Tree tree = commit.legacyTree();
+        if (tree != null && !TREES.contains(tree.id())) {
+            TREES.put((Object) tree.encode());
+        }
+    }
+
+    /** Returns the tree with UID ID, from TREE_CACHE if possible. */
+    static Tree readTree(ObjectId id) {
+        Tree tree = TREE_CACHE.get(id);
+        if (tree == null) {
+            byte[] encoded = TREES.read(id.toString());
+            tree = Tree.decode(encoded);
+            TREE_CACHE.put(id, tree, encoded.length
+                           + TREE_ENTRY_OVERHEAD * tree.entries().size());
+        }
+        return tree;
+    }
+
+    /** Store the trees for the snapshot staged in INDEX, returning the UID
+     *  of its root tree.  Trees cached in INDEX are reused, so only those
+     *  of directories holding staged changes are computed and stored; the
+     *  rest are recorded in INDEX. */
+    static ObjectId writeTree(Index index) {
+        return writeTree(index, "", index.entries());
+    }
+
+    /** Store the tree for directory DIR of the snapshot staged in INDEX,
+     *  whose entries for files in DIR are ENTRIES, returning its UID. */
+    private static ObjectId writeTree(Index index, String dir,
+                                      SortedMap<String, Index.Entry> entries) {
+        ObjectId id = index.cachedTree(dir);
+        if (id != null) {
+            return id;
+        }
+        int start = dir.isEmpty() ? 0 : dir.length() + 1;
+        Tree tree = new Tree();
+        while (!entries.isEmpty()) {
+            String name = entries.firstKey();
+            int slash = name.indexOf('/', start);
+            if (slash < 0) {
+                tree.put(name.substring(start), Tree.BLOB,
+                         entries.get(name).id);
+                entries = entries.tailMap(name + "\0");
+            } else {
+                String sub = name.substring(0, slash);
+                tree.put(sub.substring(start), Tree.TREE,
+                         writeTree(index, sub,
+                                   entries.subMap(sub + "/", sub + "0")));
+                entries = entries.tailMap(sub + "0");
+            }
+        }
+        id = ObjectId.fromHex(TREES.put((Object) tree.encode()));
+        index.cacheTree(dir, id);
+        return id;
+    }
+
+    /** Returns the snapshot of COMMIT: a map from the names of the files
+     *  it tracks to the UIDs of their blobs, in order of name. */
+    static SortedMap<String, ObjectId> snapshot(Commit commit) {
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        walkTree(commit.tree(), "", result, null);
+        return result;
+    }
+
+    /** Returns a staging area holding the snapshot of COMMIT, with its
+     *  trees cached but no stat data. */
+    static Index commitIndex(Commit commit) {
+        TreeMap<String, ObjectId> blobs = new TreeMap<>(),
+            trees = new TreeMap<>();
+        walkTree(commit.tree(), "", blobs, trees);
+        Index result = new Index(blobs);
+        for (Map.Entry<String, ObjectId> tree : trees.entrySet()) {
+            result.cacheTree(tree.getKey(), tree.getValue());
+        }
+        return result;
+    }
+
+    /** Add the files in the tree with UID ID, which represents directory
+     *  DIR, to BLOBS, mapping their names to their blobs' UIDs, and, if
+     *  TREES is not null, add DIR and its subdirectories to TREES, mapping
+     *  them to their trees' UIDs. */
+    private static void walkTree(ObjectId id, String dir,
+                                 Map<String, ObjectId> blobs,
+                                 Map<String, ObjectId> trees) {
+        if (trees != null) {
+            trees.put(dir, id);
+        }
+        String prefix = dir.isEmpty() ? "" : dir + "/";
+        for (Map.Entry<String, Tree.Entry> e
+                 : readTree(id).entries().entrySet()) {
+            String name = prefix + e.getKey();
+            if (e.getValue().isTree()) {
+                walkTree(e.getValue().id, name, blobs, trees);
+            } else {
+                blobs.put(name, e.getValue().id);
+            }
+        }
+    }
+
+    /** Returns the UID of the blob holding file NAME in COMMIT, or null if
+     *  COMMIT does not track NAME.  Only the trees of the directories on
+     *  the way to NAME are read. */
+    static ObjectId blobIn(Commit commit, String name) {
+        String[] path = name.split("/", -1);
+        Tree tree = readTree(commit.tree());
+        for (int i = 0; i < path.length; i += 1) {
+            Tree.Entry entry = tree.get(path[i]);
+            if (entry == null || entry.isTree() != (i < path.length - 1)) {
+                return null;
+            } else if (entry.isTree()) {
+                tree = readTree(entry.id);
+            } else {
+                return entry.id;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the contents of the blob with UID ID, from BLOB_CACHE if
+     *  possible.  The result must not be modified. */
+    static byte[] readBlob(ObjectId id) {
+        byte[] contents = BLOB_CACHE.get(id);
+        if (contents == null) {
+            String name = id.toString();
+            materialize(name);
+            contents = BLOBS.read(name);
+            BLOB_CACHE.put(id, contents, contents.length);
+        }
+        return contents;
+    }
+
+    /** Print the statistics of COMMIT_CACHE, TREE_CACHE, and BLOB_CACHE. */
+    static void cacheStats() {
+        COMMIT_CACHE.dump();
+        TREE_CACHE.dump();
+        BLOB_CACHE.dump();
+    }
+
+    /** Throw a GitletException unless the current directory holds an
+     *  initialized Gitlet repository. */
+    static void checkInitialized() {
+        if (!GITLET_DIR.isDirectory()) {
+            throw error("Not in an initialized Gitlet directory.");
+        }
+    }
+
+    /* BRANCHES AND THE STAGING AREA */
+
+    /** Returns the name of the current branch. */
+    static String currentBranch() {
+        return txn().readString(HEAD_FILE);
+    }
+
+    /** Returns the file holding the head of branch NAME. */
+    static File branchFile(String name) {
+        return join(HEADS_DIR, name);
+    }
+
+    /** Returns true iff there is a branch named NAME. */
+    static boolean branchExists(String name) {
+        return txn().exists(branchFile(name));
+    }
+
+    /** Returns the names of all branches, in order.  Those fetched from
+     *  remotes have names of the form REMOTE/BRANCH. */
+    static TreeSet<String> branchNames() {
+        TreeSet<String> result = new TreeSet<>();
+        addBranchNames(HEADS_DIR, "", result);
+        return result;
+    }
+
+    /** Add the names of the branches in DIR, preceded by PREFIX, to
+     *  NAMES. */
+    private static void addBranchNames(File dir, String prefix,
+                                       Set<String> names) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                addBranchNames(file, prefix + file.getName() + "/", names);
+            } else if (txn().exists(file)) {
+                names.add(prefix + file.getName());
+            }
+        }
+    }
+
+    /** Returns the UID of the head commit of branch NAME. */
+    static String branchHead(String name) {
+        return txn().readString(branchFile(name));
+    }
+
+    /** Make ID the head commit of branch NAME. */
+    static void setBranchHead(String name, String id) {
+        txn().write(branchFile(name), id);
+    }
+
+    /** Returns the UID of the head commit of the current branch. */
+    static String headId() {
+        return branchHead(currentBranch());
+    }
+
+    /** Returns the head commit of the current branch. */
+    static Commit headCommit() {
+        return readCommit(headId());
+    }
+
+    /** Returns the staging area, reading it when first needed. */
+    static Index index() {
+        if (_index == null) {
+            _index = Index.read(INDEX_FILE);
+        }
+        return _index;
+    }
+
+    /** Replace the staging area with INDEX. */
+    static void setIndex(Index index) {
+        _index = index;
+    }
+
+    /** Stage writing the staging area back to disk if it has changed. */
+    static void saveIndex() {
+        if (_index != null) {
+            _index.write(txn(), INDEX_FILE);
+        }
+    }
+
+    /** Returns the transaction collecting this command's updates to the
+     *  metadata in GITLET_DIR. */
+    static Transaction txn() {
+        if (_txn == null) {
+            _txn = new Transaction(GITLET_DIR);
+        }
+        return _txn;
+    }
+
+    /** Prepare to execute a command, discarding the cached staging area,
+     *  commit graph, UID index, and packs if their files have been changed
+     *  by anyone else since the last command ended.  The caches are kept
+     *  only by a Daemon, which runs many commands in one process. */
+    static void beginCommand() {
+        _txn = null;
+        Watcher.sync();
+        if (!stamp().equals(_stamp)) {
+            _index = null;
+            _graph = null;
+            _commitIds = null;
+            _messages = null;
+            BLOBS.reset();
+            COMMITS.reset();
+            TREES.reset();
+        }
+    }
+
+    /** Returns a summary of the sizes and modification times of the files
+     *  whose contents are cached between commands. */
+    private static String stamp() {
+        StringBuilder result = new StringBuilder();
+        for (File file : List.of(INDEX_FILE, GRAPH_FILE, ID_INDEX_FILE,
+                                 new File(ID_INDEX_FILE.getPath() + ".tail"),
+                                 MESSAGE_INDEX_FILE,
+                                 new File(MESSAGE_INDEX_FILE.getPath()
+                                          + ".tail"),
+                                 join(BLOBS.dir(), ObjectStore.PACK_DIR),
+                                 join(COMMITS.dir(), ObjectStore.PACK_DIR),
+                                 join(TREES.dir(), ObjectStore.PACK_DIR))) {
+            result.append(file.length()).append(':')
+                .append(file.lastModified()).append(' ');
+        }
+        return result.toString();
+    }
+
+    /** Make this command's updates durable and visible: flush the objects
+     *  it stored, then the commit graph and indices of commits that refer
+     *  to them, then commit its metadata updates atomically. */
+    static void commitTransaction() {
+        saveIndex();
+        Transaction txn = txn();
+        for (ObjectStore store : List.of(BLOBS, COMMITS, TREES)) {
+            for (File file : store.takeWritten()) {
+                txn.sync(file);
+            }
+        }
+        txn.afterSync(Repository::flushIndices);
+        txn.commit();
+        _stamp = stamp();
+    }
+
+    /** Write the commits added to the commit graph and indices of commits
+     *  during this command to their files. */
+    private static void flushIndices() {
+        if (_graph != null) {
+            _graph.flush();
+        }
+        if (_commitIds != null) {
+            _commitIds.flush();
+        }
+        if (_messages != null) {
+            _messages.flush();
+        }
+    }
+
+    /** Discard this command's metadata updates. */
+    static void abortTransaction() {
+        if (_txn != null) {
+            _txn.abort();
+        }
+        _index = null;
+        _stamp = null;
+    }
+
+    /** Repair the repository after any command that was interrupted while
+     *  committing its updates. */
+    static void recover() {
+        Transaction.recover(GITLET_DIR);
+    }
+
+    /** Returns the working file named NAME, a path relative to CWD with
+     *  components separated by '/'. */
+    static File workingFile(String name) {
+        return join(CWD, name);
+    }
+
+    /** Returns the names of all plain files in the working directory and
+     *  its subdirectories, other than GITLET_DIR, in lexicographic order.
+     *  They come from the watcher if it is running, and otherwise from a
+     *  walk of the working directory. */
+    static List<String> workingNames() {
+        List<String> result = Watcher.names();
+        if (result != null) {
+            return result;
+        }
+        result = new ArrayList<>();
+        listWorkingFiles(CWD, "", result);
+        result.sort(null);
+        return result;
+    }
+
+    /** Add the names of the plain files in directory DIR and its
+     *  subdirectories, other than GITLET_DIR, to RESULT, each prefixed by
+     *  PREFIX. */
+    private static void listWorkingFiles(File dir, String prefix,
+                                         List<String> result) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isFile()) {
+                result.add(prefix + file.getName());
+            } else if (file.isDirectory() && !file.equals(GITLET_DIR)) {
+                listWorkingFiles(file, prefix + file.getName() + "/",
+                                 result);
+            }
+        }
+    }
+
+    /** Delete working file NAME, if it exists, and then any directories
+     *  containing it that are left empty, up to (but not including)
+     *  CWD. */
+    static void deleteWorkingFile(String name) {
+        File file = workingFile(name);
+        if (!file.isFile()) {
+            return;
+        }
+        file.delete();
+        for (File dir = file.getParentFile();
+             !dir.equals(CWD) && dir.delete(); dir = dir.getParentFile()) {
+            continue;
+        }
+    }
+
+    /** Returns the UIDs of the blobs that would hold the current contents
+     *  of the working files NAMES, in the same order, as for
+     *  Index.currentIds.  Files that the watcher knows to be untouched
+     *  since their UIDs were last computed are not examined at all. */
+    static List<ObjectId> currentIds(List<String> names) {
+        long since = Watcher.sequence();
+        ObjectId[] result = new ObjectId[names.size()];
+        List<String> unknown = new ArrayList<>();
+        List<Integer> where = new ArrayList<>();
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = Watcher.knownId(names.get(i));
+            if (result[i] == null) {
+                unknown.add(names.get(i));
+                where.add(i);
+            }
+        }
+        List<ObjectId> ids =
+            index().currentIds(unknown, workingFiles(unknown));
+        for (int k = 0; k < ids.size(); k += 1) {
+            result[where.get(k)] = ids.get(k);
+        }
+        Watcher.remember(unknown, ids, since);
+        return Arrays.asList(result);
+    }
+
+    /** Returns the working files named NAMES, in the same order. */
+    static List<File> workingFiles(List<String> names) {
+        List<File> result = new ArrayList<>(names.size());
+        for (String name : names) {
+            result.add(workingFile(name));
+        }
+        return result;
+    }
+
+    /* COMMANDS */
+
+    /** Create a new repository in the current directory, with a single
+     *  branch whose head is the initial commit. */
+    static void init() {
+        if (GITLET_DIR.exists()) {
+            throw error("A Gitlet version-control system already exists "
+                        + "in the current directory.");
+        }
+        GITLET_DIR.mkdir();
+        BLOBS.init();
+        COMMITS.init();
+        TREES.init();
+        TREES.put((Object) Tree.EMPTY.encode());
+        HEADS_DIR.mkdirs();
+        String initial = writeCommit(Commit.initial());
+        setBranchHead(DEFAULT_BRANCH, initial);
+        txn().write(HEAD_FILE, DEFAULT_BRANCH);
+        setIndex(new Index(Map.of()));
+    }
+
+    /** Stage the current contents of working file NAME.  A file that is
+     *  unchanged since it was last staged is neither reread nor stored
+     *  again.  The UID staged is that of the contents actually stored,
+     *  should the file change after it is hashed.  If NAME is ".", stage
+     *  every plain file in the working directory and its
+     *  subdirectories. */
+    static void add(String name) {
+        if (name.equals(".")) {
+            addAll(workingNames());
+            return;
+        }
+        File file = workingFile(name);
+        if (!file.isFile()) {
+            throw error("File does not exist.");
+        }
+        Index index = index();
+        ObjectId id = index.currentId(name, file);
+        if (!BLOBS.contains(id.toString())) {
+            id = ObjectId.fromHex(BLOBS.put(file));
+        }
+        index.put(name, id, file);
+    }
+
+    /** Stage the current contents of the working files NAMES, which must
+     *  exist.  Changed files are hashed, and new contents stored, in
+     *  parallel; the staging area is updated in order of NAMES.  Files the
+     *  watcher knows to be untouched are not examined (see currentIds). */
+    static void addAll(List<String> names) {
+        Index index = index();
+        List<File> files = workingFiles(names);
+        List<ObjectId> ids = currentIds(names);
+        List<Integer> changed = new ArrayList<>();
+        for (int i = 0; i < names.size(); i += 1) {
+            if (!ids.get(i).equals(index.blob(names.get(i)))) {
+                changed.add(i);
+            }
+        }
+        List<ObjectId> stored = parallelMap(changed, i ->
+            BLOBS.contains(ids.get(i).toString())
+            ? ids.get(i) : ObjectId.fromHex(BLOBS.put(files.get(i))));
+        for (int k = 0; k < changed.size(); k += 1) {
+            int i = changed.get(k);
+            index.put(names.get(i), stored.get(k), files.get(i));
+        }
+    }
+
+    /** Record the staged snapshot as a new commit on the current branch,
+     *  with log message MESSAGE.  Only the trees of directories holding
+     *  staged changes are computed, so the cost of a commit depends on the
+     *  size of the change rather than the number of tracked files. */
+    static void commit(String message) {
+        if (message.isEmpty()) {
+            throw error("Please enter a commit message.");
+        }
+        String head = headId();
+        ObjectId tree = writeTree(index());
+        if (tree.equals(readCommit(head).tree())) {
+            throw error("No changes added to the commit.");
+        }
+        makeCommit(message, List.of(head), tree);
+    }
+
+    /** Record the snapshot whose root tree has UID TREE as a new commit on
+     *  the current branch with log message MESSAGE and parents PARENTS. */
+    private static void makeCommit(String message, List<String> parents,
+                                   ObjectId tree) {
+        Commit commit = new Commit(message, System.currentTimeMillis(),
+                                   parents, tree);
+        setBranchHead(currentBranch(), writeCommit(commit));
+    }
+
+    /** Unstage file NAME, and if the head commit tracks it, stage it for
+     *  removal and delete it from the working directory. */
+    static void rm(String name) {
+        Index index = index();
+        if (blobIn(headCommit(), name) != null) {
+            index.remove(name);
+            deleteWorkingFile(name);
+        } else if (index.contains(name)) {
+            index.remove(name);
+        } else {
+            throw error("No reason to remove the file.");
+        }
+    }
+
+    /** Print the history of the current branch, following first parents
+     *  from its head, as limited by OPTIONS (see printLog). */
+    static void log(String... options) {
+        CommitGraph graph = graph();
+        printLog(graph.firstParents(graph.indexOf(headId())), options);
+    }
+
+    /** Print every commit ever made, most recent first, as limited by
+     *  OPTIONS (see printLog). */
+    static void globalLog(String... options) {
+        printLog(graph().newestFirst(), options);
+    }
+
+    /** Print the UIDs of all commits whose log message is MESSAGE.  They
+     *  are looked up in the index of commit messages, so no commit is
+     *  read. */
+    static void find(String message) {
+        List<String> found = messageIndex().matching(messageKey(message));
+        if (found.isEmpty()) {
+            throw error("Found no commit with that message.");
+        }
+        for (String entry : found) {
+            System.out.println(entry.substring(UID_LENGTH));
+        }
+    }
+
+    /** Print the branches, the staged and removed files, modified files
+     *  that are not staged, and untracked files.  Tracked files whose stat
+     *  data is unchanged since they were staged are not read. */
+    static void status() {
+        Map<String, ObjectId> head = snapshot(headCommit());
+        Index index = index();
+        Map<String, ObjectId> staged = index.snapshot();
+
+        System.out.println("=== Branches ===");
+        String current = currentBranch();
+        for (String branch : branchNames()) {
+            System.out.println((branch.equals(current) ? "*" : "") + branch);
+        }
+
+        System.out.printf("%n=== Staged Files ===%n");
+        for (Map.Entry<String, ObjectId> entry : staged.entrySet()) {
+            if (!entry.getValue().equals(head.get(entry.getKey()))) {
+                System.out.println(entry.getKey());
+            }
+        }
+
+        System.out.printf("%n=== Removed Files ===%n");
+        for (String name : head.keySet()) {
+            if (!staged.containsKey(name)) {
+                System.out.println(name);
+            }
+        }
+
+        System.out.printf("%n=== Modifications Not Staged For Commit ===%n");
+        List<String> present = new ArrayList<>();
+        for (String name : staged.keySet()) {
+            if (workingFile(name).isFile()) {
+                present.add(name);
+            }
+        }
+        List<ObjectId> ids = currentIds(present);
+        TreeMap<String, String> changes = new TreeMap<>();
+        for (String name : staged.keySet()) {
+            changes.put(name, "deleted");
+        }
+        for (int i = 0; i < present.size(); i += 1) {
+            String name = present.get(i);
+            if (ids.get(i).equals(staged.get(name))) {
+                changes.remove(name);
+            } else {
+                changes.put(name, "modified");
+            }
+        }
+        for (Map.Entry<String, String> change : changes.entrySet()) {
+            System.out.printf("%s (%s)%n", change.getKey(), change.getValue());
+        }
+
+        System.out.printf("%n=== Untracked Files ===%n");
+        for (String name : workingNames()) {
+            if (!staged.containsKey(name)) {
+                System.out.println(name);
+            }
+        }
+        System.out.println();
+    }
+
+    /** Replace working file NAME with its version in the commit whose UID
+     *  is or starts with ID, or in the head commit if ID is null.  The file
+     *  is not staged. */
+    static void checkoutFile(String id, String name) {
+        Commit commit = id == null ? headCommit() : readCommit(resolveId(id));
+        ObjectId blob = blobIn(commit, name);
+        if (blob == null) {
+            throw error("File does not exist in that commit.");
+        }
+        writeWorkingFile(blob, workingFile(name), linkCheckout());
+    }
+
+    /** Make branch NAME current, replacing the working files with those of
+     *  its head commit. */
+    static void checkoutBranch(String name) {
+        if (!branchExists(name)) {
+            throw error("No such branch exists.");
+        }
+        if (name.equals(currentBranch())) {
+            throw error("No need to checkout the current branch.");
+        }
+        checkoutCommit(branchHead(name));
+        txn().write(HEAD_FILE, name);
+    }
+
+    /** Print the value of setting NAME if VALUE is null, and otherwise set
+     *  it to VALUE.  The settings are
+     *      checkout.link    if true, checkout, reset, and merge make large
+     *                       working files read-only hard links to cached
+     *                       copies of their blobs instead of copying them
+     *      daemon.watch     if true, a daemon started afterwards watches
+     *                       the working directory (see Watcher)
+     *      remote.NAME      the .gitlet directory of the remote NAME (see
+     *                       addRemote)
+     */
+    static void config(String name, String value) {
+        TreeMap<String, String> settings = readConfig();
+        if (value == null) {
+            if (!settings.containsKey(name)) {
+                throw error("No such setting.");
+            }
+            System.out.println(settings.get(name));
+            return;
+        }
+        if (name.isEmpty() || name.contains("=") || name.contains("\n")
+            || value.contains("\n")) {
+            throw error("Invalid setting.");
+        }
+        settings.put(name, value);
+        writeConfig(settings);
+    }
+
+    /** Record DIR, the path of another repository's .gitlet directory with
+     *  components separated by '/', as the remote NAME. */
+    static void addRemote(String name, String dir) {
+        TreeMap<String, String> settings = readConfig();
+        if (settings.containsKey(REMOTE_PREFIX + name)) {
+            throw error("A remote with that name already exists.");
+        }
+        settings.put(REMOTE_PREFIX + name, dir);
+        writeConfig(settings);
+    }
+
+    /** Forget the remote NAME. */
+    static void rmRemote(String name) {
+        TreeMap<String, String> settings = readConfig();
+        if (settings.remove(REMOTE_PREFIX + name) == null) {
+            throw error("A remote with that name does not exist.");
+        }
+        writeConfig(settings);
+    }
+
+    /** Copy the head of branch BRANCH of remote REMOTE, with its history
+     *  and the trees and blobs of its commits, into this repository, and
+     *  make it the head of the branch REMOTE/BRANCH.  Commits already here
+     *  are not copied, nor are their ancestors unless they lie beyond a
+     *  graft.  The commits to copy are found by walking the remote's commit
+     *  graph, so none is read until it is known to be missing, and each
+     *  kind of object is copied as a single pack (see transfer).  OPTIONS
+     *  may contain
+     *      --depth N    copy only the N most recent generations of the
+     *                   history; the oldest of these become grafted roots,
+     *                   listed in SHALLOW_FILE, whose parents are never
+     *                   read (a later, deeper fetch removes the grafts)
+     *      --lazy       copy no blobs; each is copied from a remote when
+     *                   its contents are first needed (see materialize)
+     */
+    static void fetch(String remoteName, String branch, String... options) {
+        int depth = Integer.MAX_VALUE;
+        boolean lazy = false;
+        for (int i = 0; i < options.length; i += 1) {
+            if (options[i].equals("--lazy")) {
+                lazy = true;
+            } else if (options[i].equals("--depth")
+                       && i + 1 < options.length) {
+                try {
+                    depth = Integer.parseInt(options[i + 1]);
+                } catch (NumberFormatException excp) {
+                    throw error("Incorrect operands.");
+                }
+                if (depth <= 0) {
+                    throw error("Incorrect operands.");
+                }
+                i += 1;
+            } else {
+                throw error("Incorrect operands.");
+            }
+        }
+        Remote remote = remote(remoteName);
+        String head = remote.branchHead(branch);
+        if (head == null) {
+            throw error("That remote does not have that branch.");
+        }
+
+        CommitGraph from = remote.graph(), graph = graph();
+        HashSet<String> shallow = new HashSet<>(shallowCommits());
+        TreeMap<Integer, String> missing = new TreeMap<>();
+        TreeSet<String> grafts = new TreeSet<>();
+        HashMap<Integer, Integer> depths = new HashMap<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(from.indexOf(head));
+        depths.put(from.indexOf(head), 1);
+        while (!queue.isEmpty()) {
+            int k = queue.remove();
+            String id = from.id(k);
+            boolean here = graph.contains(id);
+            if (here && shallow.isEmpty()) {
+                continue;
+            }
+            if (!here) {
+                missing.put(k, id);
+            }
+            int d = depths.get(k);
+            for (int p : new int[] { from.parent1(k), from.parent2(k) }) {
+                if (p == CommitGraph.NONE) {
+                    continue;
+                }
+                boolean parentHere = graph.contains(from.id(p));
+                if (!parentHere && d >= depth) {
+                    if (!here) {
+                        grafts.add(id);
+                    }
+                } else if ((!parentHere || !shallow.isEmpty())
+                           && !depths.containsKey(p)) {
+                    depths.put(p, d + 1);
+                    queue.add(p);
+                }
+            }
+        }
+
+        List<String> ids = new ArrayList<>(missing.values());
+        HashSet<String> fetched = new HashSet<>(ids);
+        List<Commit> commits =
+            parallelMap(ids, id -> Commit.decode(remote.commits().read(id)));
+        LinkedHashSet<String> trees = new LinkedHashSet<>(),
+            blobs = new LinkedHashSet<>();
+        HashSet<ObjectId> treesSeen = new HashSet<>();
+        for (int i = 0; i < ids.size(); i += 1) {
+            for (String parent : commits.get(i).parents()) {
+                if (!graph.contains(parent) && !fetched.contains(parent)) {
+                    grafts.add(ids.get(i));
+                }
+            }
+            Tree legacy = commits.get(i).legacyTree();
+            if (legacy == null) {
+                missingObjects(remote.trees(), TREES, lazy ? null : BLOBS,
+                               commits.get(i).tree(), treesSeen, trees,
+                               blobs);
+                continue;
+            }
+            storeLegacyTree(commits.get(i));
+            for (Tree.Entry entry : legacy.entries().values()) {
+                String blob = entry.id.toString();
+                if (!lazy && !BLOBS.contains(blob)) {
+                    blobs.add(blob);
+                }
+            }
+        }
+        transfer(List.of(remote.commits(), remote.trees(), remote.blobs()),
+                 List.of(COMMITS, TREES, BLOBS), List.of(ids, trees, blobs));
+        for (int i = 0; i < ids.size(); i += 1) {
+            indexCommit(ids.get(i), commits.get(i),
+                        grafts.contains(ids.get(i)));
+        }
+        updateShallow(grafts);
+        setBranchHead(remoteName + "/" + branch, head);
+    }
+
+    /** Copy the head of the current branch, with the history, trees, and
+     *  blobs the remote REMOTE lacks, into REMOTE, and make it the head of
+     *  REMOTE's branch BRANCH.  That branch's current head, if any, must
+     *  be in the current branch's history.  If BRANCH is REMOTE's current
+     *  branch, REMOTE's staging area, which must hold no changes, is
+     *  replaced with the pushed snapshot, so that REMOTE's next commit
+     *  keeps the pushed files.  REMOTE's working files are left alone. */
+    static void push(String remoteName, String branch) {
+        Remote remote = remote(remoteName);
+        String head = headId(), remoteHead = remote.branchHead(branch);
+        CommitGraph graph = graph(), to = remote.graph();
+        if (remoteHead != null && !graph.isAncestor(remoteHead, head)) {
+            throw error("Please pull down remote changes before pushing.");
+        }
+        boolean current = branch.equals(remote.currentBranch());
+        if (current && remoteHead != null
+            && !remote.index().snapshot().equals(remote.snapshot(remoteHead))) {
+            throw error("Remote has uncommitted changes on that branch.");
+        }
+        Set<String> shallow = new HashSet<>(shallowCommits());
+        TreeMap<Integer, String> missing = new TreeMap<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(graph.indexOf(head));
+        while (!queue.isEmpty()) {
+            int k = queue.remove();
+            String id = graph.id(k);
+            if (missing.containsKey(k) || to.contains(id)) {
+                continue;
+            }
+            if (shallow.contains(id)) {
+                throw error("Cannot push history beyond a shallow boundary.");
+            }
+            missing.put(k, id);
+            for (int p : new int[] { graph.parent1(k), graph.parent2(k) }) {
+                if (p != CommitGraph.NONE) {
+                    queue.add(p);
+                }
+            }
+        }
+
+        List<String> ids = new ArrayList<>(missing.values());
+        List<Commit> commits = new ArrayList<>();
+        LinkedHashSet<String> trees = new LinkedHashSet<>(),
+            blobs = new LinkedHashSet<>();
+        HashSet<ObjectId> treesSeen = new HashSet<>();
+        for (String id : ids) {
+            Commit commit = readCommit(id);
+            commits.add(commit);
+            missingObjects(TREES, remote.trees(), remote.blobs(),
+                           commit.tree(), treesSeen, trees, blobs);
+        }
+        for (String blob : blobs) {
+            materialize(blob);
+        }
+        transfer(List.of(COMMITS, TREES, BLOBS),
+                 List.of(remote.commits(), remote.trees(), remote.blobs()),
+                 List.of(ids, trees, blobs));
+        remote.addCommits(ids, commits);
+        remote.setBranchHead(branch, head,
+                             current ? commitIndex(headCommit()) : null);
+    }
+
+    /** Fetch branch BRANCH of remote REMOTE and merge REMOTE/BRANCH into
+     *  the current branch. */
+    static void pull(String remoteName, String branch) {
+        fetch(remoteName, branch);
+        merge(remoteName + "/" + branch);
+    }
+
+    /** Add to TREES the UIDs of the tree ROOT in SOURCE and of its
+     *  subtrees, and to BLOBS those of the blobs they hold, omitting trees
+     *  in SEEN or in DEST, together with everything under them, and blobs
+     *  in DESTBLOBS.  If DESTBLOBS is null, no blobs are added.  The trees
+     *  added are also added to SEEN. */
+    private static void missingObjects(ObjectStore source, ObjectStore dest,
+                                       ObjectStore destBlobs, ObjectId root,
+                                       Set<ObjectId> seen,
+                                       Collection<String> trees,
+                                       Collection<String> blobs) {
+        String name = root.toString();
+        if (!seen.add(root) || dest.contains(name)) {
+            return;
+        }
+        trees.add(name);
+        for (Tree.Entry entry
+                 : Tree.decode(source.read(name)).entries().values()) {
+            if (entry.isTree()) {
+                missingObjects(source, dest, destBlobs, entry.id, seen,
+                               trees, blobs);
+            } else if (destBlobs != null
+                       && !destBlobs.contains(entry.id.toString())) {
+                blobs.add(entry.id.toString());
+            }
+        }
+    }
+
+    /** Copy the objects with the UIDs in IDS.get(K) from SOURCES.get(K) to
+     *  DESTS.get(K), for each K.  Each store's objects travel as one pack,
+     *  streamed from the source's stored objects into the destination's
+     *  pack directory, and the stores are copied in parallel. */
+    private static void transfer(List<ObjectStore> sources,
+                                 List<ObjectStore> dests,
+                                 List<? extends Collection<String>> ids) {
+        List<Runnable> copies = new ArrayList<>();
+        for (int k = 0; k < sources.size(); k += 1) {
+            ObjectStore source = sources.get(k), dest = dests.get(k);
+            Collection<String> some = ids.get(k);
+            copies.add(() -> dest.receive(source, some));
+        }
+        parallelRun(copies);
+    }
+
+    /** Record the commits in GRAFTS, just added to the commit graph as
+     *  grafts, in SHALLOW_FILE.  Grafts already listed there whose parents
+     *  are now all present are lifted, which requires rebuilding the
+     *  commit graph. */
+    private static void updateShallow(Set<String> grafts) {
+        CommitGraph graph = graph();
+        TreeSet<String> shallow = new TreeSet<>(grafts);
+        boolean lifted = false;
+        for (String id : shallowCommits()) {
+            boolean complete = true;
+            for (String parent : readCommit(id).parents()) {
+                complete &= graph.contains(parent);
+            }
+            if (complete) {
+                lifted = true;
+            } else {
+                shallow.add(id);
+            }
+        }
+        if (lifted) {
+            graph.rebuild(COMMITS);
+        }
+        if (shallow.isEmpty()) {
+            txn().delete(SHALLOW_FILE);
+        } else {
+            txn().write(SHALLOW_FILE, String.join("\n", shallow) + "\n");
+        }
+    }
+
+    /** Returns the UIDs of the grafted commits listed in SHALLOW_FILE. */
+    static List<String> shallowCommits() {
+        String text = txn().readString(SHALLOW_FILE);
+        return text == null || text.isEmpty()
+            ? List.of() : List.of(text.split("\n"));
+    }
+
+    /** Returns the remote named NAME. */
+    private static Remote remote(String name) {
+        String dir = configValue(REMOTE_PREFIX + name);
+        if (dir == null) {
+            throw error("A remote with that name does not exist.");
+        }
+        File file = new File(dir.replace("/", File.separator));
+        Remote remote =
+            new Remote(file.isAbsolute() ? file : join(CWD, file.getPath()));
+        if (!remote.exists()) {
+            throw error("Remote directory not found.");
+        }
+        return remote;
+    }
+
+    /** Make sure the blob with UID ID is stored here, copying it from the
+     *  first remote that has it if it was left behind by a lazy fetch. */
+    private static void materialize(String id) {
+        if (BLOBS.contains(id)) {
+            return;
+        }
+        for (Map.Entry<String, String> setting : readConfig().entrySet()) {
+            if (setting.getKey().startsWith(REMOTE_PREFIX)) {
+                Remote remote;
+                try {
+                    remote = remote(setting.getKey()
+                                    .substring(REMOTE_PREFIX.length()));
+                } catch (GitletException excp) {
+                    continue;
+                }
+                if (remote.blobs().contains(id)) {
+                    BLOBS.copyFrom(remote.blobs(), id);
+                    return;
+                }
+            }
+        }
+        throw error("Contents of %s are not available from any remote.", id);
+    }
+
+    /** Create a branch NAME whose head is the current head commit. */
+    static void branch(String name) {
+        if (branchExists(name)) {
+            throw error("A branch with that name already exists.");
+        }
+        setBranchHead(name, headId());
+    }
+
+    /** Delete the branch NAME (but none of its commits). */
+    static void rmBranch(String name) {
+        if (!branchExists(name)) {
+            throw error("A branch with that name does not exist.");
+        }
+        if (name.equals(currentBranch())) {
+            throw error("Cannot remove the current branch.");
+        }
+        txn().delete(branchFile(name));
+    }
+
+    /** Check out the commit whose UID is or starts with ID and make it the
+     *  head of the current branch. */
+    static void reset(String id) {
+        String full = resolveId(id);
+        checkoutCommit(full);
+        setBranchHead(currentBranch(), full);
+    }
+
+    /** Merge the head of branch NAME into the current branch, committing
+     *  the result.  The split point is found from the commit graph alone.
+     *  Files changed on only one side since the split point take that
+     *  side's version; files changed differently on both sides are merged
+     *  line by line (see Merge), and contain conflicts only where both
+     *  sides changed the same lines. */
+    static void merge(String name) {
+        Index index = index();
+        String headId = headId();
+        Commit headCommit = readCommit(headId);
+        if (!writeTree(index).equals(headCommit.tree())) {
+            throw error("You have uncommitted changes.");
+        }
+        if (!branchExists(name)) {
+            throw error("A branch with that name does not exist.");
+        }
+        String current = currentBranch();
+        if (name.equals(current)) {
+            throw error("Cannot merge a branch with itself.");
+        }
+        String otherId = branchHead(name);
+        String splitId = graph().mergeBase(headId, otherId);
+        if (splitId == null) {
+            throw error("Given branch shares no history with the current "
+                        + "branch.");
+        }
+        Map<String, ObjectId> head = snapshot(headCommit),
+            other = snapshot(readCommit(otherId)),
+            split = snapshot(readCommit(splitId));
+
+        TreeMap<String, ObjectId> changes = new TreeMap<>();
+        TreeSet<String> conflicts = new TreeSet<>();
+        TreeSet<String> names = new TreeSet<>(split.keySet());
+        names.addAll(head.keySet());
+        names.addAll(other.keySet());
+        for (String file : names) {
+            ObjectId s = split.get(file), h = head.get(file),
+                o = other.get(file);
+            if (Objects.equals(h, o) || Objects.equals(s, o)) {
+                continue;
+            } else if (Objects.equals(s, h)) {
+                changes.put(file, o);
+            } else {
+                conflicts.add(file);
+            }
+        }
+        for (String file : names) {
+            if ((changes.containsKey(file) || conflicts.contains(file))
+                && !head.containsKey(file) && workingFile(file).exists()) {
+                throw error("There is an untracked file in the way; "
+                            + "delete it, or add and commit it first.");
+            }
+        }
+
+        if (splitId.equals(otherId)) {
+            message("Given branch is an ancestor of the current branch.");
+            return;
+        }
+        if (splitId.equals(headId)) {
+            checkoutCommit(otherId);
+            setBranchHead(current, otherId);
+            message("Current branch fast-forwarded.");
+            return;
+        }
+
+        boolean link = linkCheckout();
+        for (Map.Entry<String, ObjectId> change : changes.entrySet()) {
+            String file = change.getKey();
+            ObjectId blob = change.getValue();
+            File working = workingFile(file);
+            if (blob == null) {
+                index.remove(file);
+                deleteWorkingFile(file);
+            } else {
+                writeWorkingFile(blob, working, link);
+                index.put(file, blob, working);
+            }
+        }
+        boolean conflicted = false;
+        for (String file : conflicts) {
+            File working = workingFile(file);
+            try {
+                Files.createDirectories(working.toPath().getParent());
+                Files.deleteIfExists(working.toPath());
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            try (OutputStream out = new BufferedOutputStream(
+                     Files.newOutputStream(working.toPath()))) {
+                conflicted |= !Merge.merge(contentsOf(split.get(file)),
+                                           contentsOf(head.get(file)),
+                                           contentsOf(other.get(file)), out);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            index.put(file, ObjectId.fromHex(BLOBS.put(working)), working);
+        }
+        makeCommit(String.format("Merged %s into %s.", name, current),
+                   List.of(headId, otherId), writeTree(index));
+        if (conflicted) {
+            message("Encountered a merge conflict.");
+        }
+    }
+
+    /** Print the differences between two versions of the files, in
+     *  unified format, as selected by OPERANDS:
+     *      (none)             the staging area and the working files
+     *      --staged           the head commit and the staging area
+     *      COMMIT             commit COMMIT and the working files
+     *      COMMIT1 COMMIT2    commits COMMIT1 and COMMIT2
+     *  Only files tracked by one side or the other are compared. */
+    static void diff(String... operands) {
+        Map<String, ObjectId> before, after;
+        boolean working = false;
+        if (operands.length == 0) {
+            before = index().snapshot();
+            after = workingSnapshot(before.keySet());
+            working = true;
+        } else if (operands.length == 1 && operands[0].equals("--staged")) {
+            before = snapshot(headCommit());
+            after = index().snapshot();
+        } else if (operands.length == 1) {
+            before = snapshot(readCommit(resolveId(operands[0])));
+            TreeSet<String> tracked = new TreeSet<>(before.keySet());
+            tracked.addAll(index().snapshot().keySet());
+            after = workingSnapshot(tracked);
+            working = true;
+        } else {
+            before = snapshot(readCommit(resolveId(operands[0])));
+            after = snapshot(readCommit(resolveId(operands[1])));
+        }
+        TreeSet<String> names = new TreeSet<>(before.keySet());
+        names.addAll(after.keySet());
+        for (String name : names) {
+            ObjectId a = before.get(name), b = after.get(name);
+            if (!Objects.equals(a, b)) {
+                byte[] newer = b != null && working
+                    ? readContents(workingFile(name)) : contentsOf(b);
+                printDiff(name, a, b, contentsOf(a), newer);
+            }
+        }
+    }
+
+    /* AUXILIARY METHODS */
+
+    /** Returns a map from each of NAMES that names a working file to the
+     *  UID of the blob that would hold its current contents. */
+    private static Map<String, ObjectId> workingSnapshot(
+        Collection<String> names) {
+        List<String> present = new ArrayList<>();
+        for (String name : names) {
+            if (workingFile(name).isFile()) {
+                present.add(name);
+            }
+        }
+        List<ObjectId> ids =
+            index().currentIds(present, workingFiles(present));
+        TreeMap<String, ObjectId> result = new TreeMap<>();
+        for (int i = 0; i < present.size(); i += 1) {
+            result.put(present.get(i), ids.get(i));
+        }
+        return result;
+    }
+
+    /** Print the differences between OLDER, the contents of file NAME in
+     *  blob A, and NEWER, its contents in blob B, where A or B is null if
+     *  the file is absent on that side. */
+    private static void printDiff(String name, ObjectId a, ObjectId b,
+                                  byte[] older, byte[] newer) {
+        System.out.printf("diff --git a/%1$s b/%1$s%n", name);
+        if (a == null) {
+            System.out.println("new file");
+        } else if (b == null) {
+            System.out.println("deleted file");
+        }
+        String from = a == null ? "/dev/null" : "a/" + name,
+            to = b == null ? "/dev/null" : "b/" + name;
+        Diff.Lines linesA = new Diff.Lines(older),
+            linesB = new Diff.Lines(newer);
+        if (linesA.isBinary() || linesB.isBinary()) {
+            System.out.printf("Binary files %s and %s differ%n", from, to);
+            return;
+        }
+        System.out.printf("--- %s%n+++ %s%n", from, to);
+        Diff.printUnified(linesA, linesB, Diff.diff(linesA, linesB),
+                          System.out);
+    }
+
+
+    /** Returns the contents of the blob with UID ID, or an empty array if
+     *  ID is null. */
+    private static byte[] contentsOf(ObjectId id) {
+        return id == null ? new byte[0] : readBlob(id);
+    }
+
+    /** Returns the full UID of the commit whose UID is or starts with ID.
+     *  Abbreviations are looked up in the index of commit UIDs, so the
+     *  commits themselves are never listed. */
+    static String resolveId(String id) {
+        String found = null;
+        if (id.matches("[0-9a-fA-F]{1,40}")) {
+            found = commitIds().resolve(id);
+        }
+        if (found == null) {
+            throw error("No commit with that id exists.");
+        }
+        return found;
+    }
+
+    /** Replace the working files tracked by the head commit with those of
+     *  the commit with UID ID, and make its snapshot the staged one.  Does
+     *  nothing (but report an error) if an untracked working file would be
+     *  overwritten.  The trees of the commit are cached in the new staging
+     *  area.
+     *
+     *  Only the files that differ between the two commits' trees are
+     *  deleted or checked for untracked files in the way, and subtrees
+     *  that the commits share are not compared at all.  A working file
+     *  that the staging area shows to hold its version in the commit
+     *  already (by its stat data, or failing that its hash) is left alone,
+     *  so switching between similar commits writes only what differs. */
+    static void checkoutCommit(String id) {
+        TreeMap<String, ObjectId[]> changes = new TreeMap<>();
+        diffTrees(headCommit().tree(), readCommit(id).tree(), "", changes);
+        Index index = index();
+        for (Map.Entry<String, ObjectId[]> change : changes.entrySet()) {
+            String name = change.getKey();
+            if (change.getValue()[0] == null && !index.contains(name)
+                && workingFile(name).exists()) {
+                throw error("There is an untracked file in the way; "
+                            + "delete it, or add and commit it first.");
+            }
+        }
+        for (Map.Entry<String, ObjectId[]> change : changes.entrySet()) {
+            if (change.getValue()[1] == null) {
+                deleteWorkingFile(change.getKey());
+            }
+        }
+
+        Index result = commitIndex(readCommit(id));
+        TreeMap<String, ObjectId> target = new TreeMap<>(result.snapshot());
+        List<String> kept = new ArrayList<>();
+        for (Map.Entry<String, ObjectId> entry : target.entrySet()) {
+            String name = entry.getKey();
+            if (entry.getValue().equals(index.blob(name))
+                && workingFile(name).isFile()) {
+                kept.add(name);
+            }
+        }
+        List<ObjectId> ids = index.currentIds(kept, workingFiles(kept));
+        for (int i = 0; i < kept.size(); i += 1) {
+            String name = kept.get(i);
+            if (ids.get(i).equals(target.get(name))) {
+                result.put(name, index.entry(name));
+                target.remove(name);
+            }
+        }
+        boolean link = linkCheckout();
+        for (Map.Entry<String, ObjectId> entry : target.entrySet()) {
+            File file = workingFile(entry.getKey());
+            writeWorkingFile(entry.getValue(), file, link);
+            result.put(entry.getKey(), entry.getValue(), file);
+        }
+        setIndex(result);
+    }
+
+    /** Add to CHANGES an entry for each file whose blob differs between
+     *  the trees with UIDs A and B, which represent directory DIR on each
+     *  side (either being null if DIR is absent on that side).  Each entry
+     *  maps the file's name to the UIDs of its blobs in A and in B, either
+     *  being null if the file is absent on that side.  Subtrees with equal
+     *  UIDs are skipped unread. */
+    private static void diffTrees(ObjectId a, ObjectId b, String dir,
+                                  Map<String, ObjectId[]> changes) {
+        if (Objects.equals(a, b)) {
+            return;
+        }
+        Tree treeA = a == null ? Tree.EMPTY : readTree(a),
+            treeB = b == null ? Tree.EMPTY : readTree(b);
+        TreeSet<String> names = new TreeSet<>(treeA.entries().keySet());
+        names.addAll(treeB.entries().keySet());
+        String prefix = dir.isEmpty() ? "" : dir + "/";
+        for (String name : names) {
+            Tree.Entry entryA = treeA.get(name), entryB = treeB.get(name);
+            ObjectId subA = null, subB = null, blobA = null, blobB = null;
+            if (entryA != null && entryA.isTree()) {
+                subA = entryA.id;
+            } else if (entryA != null) {
+                blobA = entryA.id;
+            }
+            if (entryB != null && entryB.isTree()) {
+                subB = entryB.id;
+            } else if (entryB != null) {
+                blobB = entryB.id;
+            }
+            if (subA != null || subB != null) {
+                diffTrees(subA, subB, prefix + name, changes);
+            }
+            if (!Objects.equals(blobA, blobB)) {
+                changes.put(prefix + name, new ObjectId[] { blobA, blobB });
+            }
+        }
+    }
+
+    /** Replace working file FILE with the contents of blob BLOB.  If LINK,
+     *  and the blob takes more than LINK_THRESHOLD bytes, FILE becomes a
+     *  read-only hard link to a cached copy of the blob (see
+     *  ObjectStore.linkTo) rather than a copy of its own.  Directories
+     *  leading to FILE are created as needed. */
+    private static void writeWorkingFile(ObjectId blob, File file,
+                                         boolean link) {
+        String id = blob.toString();
+        materialize(id);
+        file.getParentFile().mkdirs();
+        if (link && BLOBS.storedSize(id) > LINK_THRESHOLD) {
+            BLOBS.linkTo(id, file);
+        } else {
+            BLOBS.copyTo(id, file);
+        }
+    }
+
+    /** Returns true iff the setting checkout.link is true, so that large
+     *  files are checked out as hard links. */
+    private static boolean linkCheckout() {
+        return Boolean.parseBoolean(configValue("checkout.link"));
+    }
+
+    /** Returns the value of setting NAME, or null if it is not set. */
+    static String configValue(String name) {
+        return readConfig().get(name);
+    }
+
+    /** Stage writing SETTINGS to CONFIG_FILE. */
+    private static void writeConfig(Map<String, String> settings) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            text.append(setting.getKey()).append('=')
+                .append(setting.getValue()).append('\n');
+        }
+        txn().write(CONFIG_FILE, text.toString());
+    }
+
+    /** Returns the settings in CONFIG_FILE, as they will be once the
+     *  current command commits. */
+    private static TreeMap<String, String> readConfig() {
+        TreeMap<String, String> result = new TreeMap<>();
+        String text = txn().readString(CONFIG_FILE);
+        if (text != null) {
+            for (String line : text.split("\n")) {
+                int eq = line.indexOf('=');
+                if (eq > 0) {
+                    result.put(line.substring(0, eq), line.substring(eq + 1));
+                }
+            }
+        }
+        return result;
+    }
+    /** Print the log entry for COMMIT, whose UID is ID, to OUT. */
+    private static void printLogEntry(Formatter out, String id,
+                                      Commit commit) {
+        out.format("===%ncommit %s%n", id);
+        if (commit.isMerge()) {
+            out.format("Merge: %.7s %.7s%n", commit.parents().get(0),
+                       commit.parents().get(1));
+        }
+        out.format("Date: %1$ta %1$tb %1$te %1$tT %1$tY %1$tz%n",
+                   commit.date());
+        out.format("%s%n%n", commit.message());
+    }
+
+    /** Print the commits with record numbers RECORDS in the commit graph
+     *  as RECORDS produces them, so that the first appear at once however
+     *  long the history.  OPTIONS may contain
+     *      --limit N       print at most N commits
+     *      --since DATE    omit commits made before DATE, given as
+     *                      yyyy-mm-dd or yyyy-mm-ddThh:mm:ss in local time
+     *  Commits are selected by the timestamps in the graph, so commits that
+     *  are not printed are never read.  One Formatter serves all entries. */
+    private static void printLog(Iterable<Integer> records,
+                                 String... options) {
+        long limit = Long.MAX_VALUE, since = Long.MIN_VALUE;
+        for (int i = 0; i < options.length; i += 2) {
+            if (i + 1 == options.length) {
+                throw error("Incorrect operands.");
+            }
+            try {
+                switch (options[i]) {
+                    case "--limit":
+                        limit = Long.parseLong(options[i + 1]);
+                        break;
+                    case "--since":
+                        since = parseDate(options[i + 1]);
+                        break;
+                    default:
+                        throw error("Incorrect operands.");
+                }
+            } catch (NumberFormatException | DateTimeParseException excp) {
+                throw error("Incorrect operands.");
+            }
+        }
+        CommitGraph graph = graph();
+        Formatter out = new Formatter((Appendable) System.out, Locale.US);
+        for (int k : records) {
+            if (limit <= 0) {
+                break;
+            }
+            if (graph.timestamp(k) >= since) {
+                ObjectId id = graph.objectId(k);
+                printLogEntry(out, id.toString(), readCommit(id));
+                limit -= 1;
+            }
+        }
+        out.flush();
+    }
+
+    /** Returns the time denoted by DATE, which has the form yyyy-mm-dd or
+     *  yyyy-mm-ddThh:mm:ss in local time, in milliseconds since the
+     *  epoch. */
+    private static long parseDate(String date) {
+        LocalDateTime time = date.contains("T")
+            ? LocalDateTime.parse(date)
+            : LocalDate.parse(date).atStartOfDay();
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /** Fold all loose blobs, trees, and commits into packs.  Successive
+     *  versions of each file, successive trees of each directory, and
+     *  successive commits are offered to the packer next to each other, so
+     *  that each is stored as a delta against the one before it where that
+     *  pays. */
+    static void pack() {
+        List<Commit> commits = new ArrayList<>();
+        List<String> commitOrder = new ArrayList<>();
+        for (String id : COMMITS.ids()) {
+            commits.add(readCommit(id));
+        }
+        commits.sort(Comparator.comparingLong(Commit::timestamp));
+        TreeMap<String, LinkedHashSet<String>> versions = new TreeMap<>(),
+            treeVersions = new TreeMap<>();
+        for (Commit commit : commits) {
+            commitOrder.add(commit.id());
+            TreeMap<String, ObjectId> blobs = new TreeMap<>();
+            TreeMap<String, ObjectId> trees = new TreeMap<>();
+            walkTree(commit.tree(), "", blobs, trees);
+            addVersions(versions, blobs);
+            addVersions(treeVersions, trees);
+        }
+        BLOBS.pack(concat(versions.values()));
+        TREES.pack(concat(treeVersions.values()));
+        COMMITS.pack(commitOrder);
+    }
+
+    /** Delete the commits, trees, and blobs that cannot be reached from
+     *  the head of any branch or from the staging area, and the cached
+     *  copies of blobs that are no longer linked into the working
+     *  directory.  Reachability is marked in a bitmap over each store's
+     *  objects (see ObjectStore.Bitmap).  Commits are marked by walking the
+     *  commit graph, so the history is traversed without reading any
+     *  commit; then the tree of each reachable commit is walked, skipping
+     *  subtrees already marked, so each reachable tree is read once.
+     *  Grafted commits (see fetch) are walked as roots.  Unreachable
+     *  loose objects are deleted, packs holding unreachable objects are
+     *  replaced by a single pack of their reachable ones, and the indices
+     *  of commits are rebuilt. */
+    static void gc() {
+        CommitGraph graph = graph();
+        BitSet reachable = new BitSet(graph.size());
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        for (String branch : branchNames()) {
+            work.add(graph.indexOf(branchHead(branch)));
+        }
+        while (!work.isEmpty()) {
+            int k = work.remove();
+            if (k == CommitGraph.NONE || reachable.get(k)) {
+                continue;
+            }
+            reachable.set(k);
+            work.add(graph.parent1(k));
+            work.add(graph.parent2(k));
+        }
+
+        ObjectStore.Bitmap commits = COMMITS.new Bitmap(),
+            trees = TREES.new Bitmap(), blobs = BLOBS.new Bitmap();
+        for (int k = reachable.nextSetBit(0); k >= 0;
+             k = reachable.nextSetBit(k + 1)) {
+            ObjectId id = graph.objectId(k);
+            commits.add(id.toString());
+            markTree(readCommit(id).tree(), trees, blobs);
+        }
+        Index index = index();
+        for (ObjectId blob : index.snapshot().values()) {
+            blobs.add(blob.toString());
+        }
+        for (ObjectId tree : index.cachedTrees()) {
+            markTree(tree, trees, blobs);
+        }
+
+        BLOBS.pruneLinks(blobs);
+        BLOBS.sweep(blobs);
+        TREES.sweep(trees);
+        if (COMMITS.sweep(commits) > 0) {
+            List<String> shallow = new ArrayList<>();
+            for (String id : shallowCommits()) {
+                if (COMMITS.contains(id)) {
+                    shallow.add(id);
+                }
+            }
+            if (shallow.isEmpty()) {
+                txn().delete(SHALLOW_FILE);
+            } else {
+                txn().write(SHALLOW_FILE, String.join("\n", shallow) + "\n");
+            }
+            graph().rebuild(COMMITS);
+            commitIds().rebuild(COMMITS.ids());
+            messageIndex().rebuild(messageKeys());
+        }
+    }
+
+    /** Add the tree with UID ID, its subtrees, and their blobs to TREES
+     *  and BLOBS, skipping subtrees already in TREES. */
+    private static void markTree(ObjectId id, ObjectStore.Bitmap trees,
+                                 ObjectStore.Bitmap blobs) {
+        if (!trees.add(id.toString())) {
+            return;
+        }
+        for (Tree.Entry entry : readTree(id).entries().values()) {
+            if (entry.isTree()) {
+                markTree(entry.id, trees, blobs);
+            } else {
+                blobs.add(entry.id.toString());
+            }
+        }
+    }
+
+    /** Add each UID in SNAPSHOT to the set in VERSIONS for its name. */
+    private static void addVersions(Map<String, LinkedHashSet<String>> versions,
+                                    Map<String, ?> snapshot) {
+        for (Map.Entry<String, ?> entry : snapshot.entrySet()) {
+            versions.computeIfAbsent(entry.getKey(),
+                                     k -> new LinkedHashSet<>())
+                .add(entry.getValue().toString());
+        }
+    }
+
+    /** Returns the concatenation of SETS. */
+    private static List<String> concat(
+        Collection<LinkedHashSet<String>> sets) {
+        List<String> result = new ArrayList<>();
+        for (LinkedHashSet<String> ids : sets) {
+            result.addAll(ids);
+        }
+        return result;
+    }
 
-    /* TODO: fill in the rest of this class. */
+    /** The staging area, once read. */
+    private static Index _index;
+    /** The transaction for the current command, once started. */
+    private static Transaction _txn;
+    /** The commit graph, once opened. */
+    private static CommitGraph _graph;
+    /** The index of commit UIDs, once opened. */
+    private static IdIndex _commitIds;
+    /** The index of commit messages, once opened. */
+    private static IdIndex _messages;
+    /** The stamp of the cached files when the last command ended, or
+     *  null if the caches are not to be trusted. */
+    private static String _stamp;
 }
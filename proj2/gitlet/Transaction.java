@@ -0,0 +1,283 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static gitlet.Utils.*;
+
+/** A batch of updates to the repository's metadata files (HEAD, branch
+ *  heads, the index, ...) that is applied all at once or not at all.
+ *
+ *  Writes are staged in temporary files next to their targets, and read
+ *  back through read until the transaction commits.  Committing
+ *      1. flushes every staged file to disk, together with any other files
+ *         registered with sync (such as newly stored objects), all in one
+ *         batch at the end of the command rather than one at a time, and
+ *         then runs the actions registered with afterSync (such as
+ *         appending to the commit graph), so that nothing they write can
+ *         refer to objects that are not yet on disk;
+ *      2. writes and flushes a journal listing the renames to perform,
+ *         which is the commit point;
+ *      3. renames each staged file over its target (or deletes targets
+ *         staged for deletion), flushes the affected directories, and
+ *         deletes the journal.
+ *  A crash before step 2 leaves the old metadata intact; a crash after it
+ *  is repaired by recover, which finishes the renames listed in the
+ *  journal.  Either way, no metadata file is ever seen half-written.
+ *
+ *  The journal holds one line per update: the staged file's path, a tab,
+ *  and the target's path, or "-" and the target's path for a deletion.
+ */
+class Transaction {
+
+    /** Suffix of the names of staged files. */
+    static final String STAGED_SUFFIX = ".staged";
+
+    /** A transaction whose journal is kept in directory DIR. */
+    Transaction(File dir) {
+        _journal = join(dir, "journal");
+    }
+
+    /** Stage writing the concatenation of CONTENTS, as for
+     *  Utils.writeContents, to FILE. */
+    void write(File file, Object... contents) {
+        File staged = new File(file.getPath() + STAGED_SUFFIX);
+        file.getParentFile().mkdirs();
+        writeContents(staged, contents);
+        _updates.put(file, staged);
+    }
+
+    /** Stage deleting FILE. */
+    void delete(File file) {
+        File staged = _updates.remove(file);
+        if (staged != null) {
+            staged.delete();
+        }
+        _updates.put(file, null);
+    }
+
+    /** Returns the contents of FILE as they will be once I commit, or null
+     *  if FILE does not or will not exist. */
+    byte[] read(File file) {
+        if (_updates.containsKey(file)) {
+            File staged = _updates.get(file);
+            return staged == null ? null : readContents(staged);
+        }
+        return file.isFile() ? readContents(file) : null;
+    }
+
+    /** Returns the contents of FILE as they will be once I commit, as a
+     *  String, or null if FILE does not or will not exist. */
+    String readString(File file) {
+        byte[] contents = read(file);
+        return contents == null
+            ? null : new String(contents, StandardCharsets.UTF_8);
+    }
+
+    /** Returns true iff FILE will exist once I commit. */
+    boolean exists(File file) {
+        if (_updates.containsKey(file)) {
+            return _updates.get(file) != null;
+        }
+        return file.isFile();
+    }
+
+    /** Arrange for FILE, which has already been written in place, to be
+     *  flushed to disk before my updates are applied. */
+    void sync(File file) {
+        _toSync.add(file);
+    }
+
+    /** Arrange for ACTION, which durably updates files in place, to be
+     *  run once the files registered with sync are on disk and before my
+     *  updates are applied. */
+    void afterSync(Runnable action) {
+        _afterSync.add(action);
+    }
+
+    /** Apply all staged updates atomically, as described above. */
+    void commit() {
+        List<File> files = new ArrayList<>(_toSync);
+        LinkedHashSet<File> dirs = new LinkedHashSet<>();
+        for (File file : _toSync) {
+            dirs.add(file.getParentFile());
+        }
+        if (_updates.isEmpty()) {
+            force(files);
+            dirs.forEach(Transaction::forceDirectory);
+            _afterSync.forEach(Runnable::run);
+            _toSync.clear();
+            _afterSync.clear();
+            return;
+        }
+        StringBuilder journal = new StringBuilder();
+        for (Map.Entry<File, File> update : _updates.entrySet()) {
+            File staged = update.getValue();
+            journal.append(staged == null ? "-" : staged.getPath())
+                .append('\t').append(update.getKey().getPath()).append('\n');
+            if (staged != null) {
+                files.add(staged);
+            }
+        }
+        force(files);
+        dirs.forEach(Transaction::forceDirectory);
+        _afterSync.forEach(Runnable::run);
+
+        File tmp = new File(_journal.getPath() + STAGED_SUFFIX);
+        writeContents(tmp, journal.toString());
+        force(List.of(tmp));
+        move(tmp, _journal);
+        forceDirectory(_journal.getParentFile());
+
+        apply(_updates);
+        _journal.delete();
+        _updates.clear();
+        _toSync.clear();
+        _afterSync.clear();
+    }
+
+    /** Discard all staged updates. */
+    void abort() {
+        for (File staged : _updates.values()) {
+            if (staged != null) {
+                staged.delete();
+            }
+        }
+        _updates.clear();
+        _toSync.clear();
+        _afterSync.clear();
+    }
+
+    /** Replace FILE, outside of any transaction, with the concatenation of
+     *  CONTENTS, as for Utils.writeContents.  The contents are written to a
+     *  staged file and flushed to disk before it is renamed over FILE, so
+     *  a crash leaves either the old or the new contents; a staged file
+     *  left behind is removed by recover. */
+    static void replace(File file, Object... contents) {
+        File staged = new File(file.getPath() + STAGED_SUFFIX);
+        writeContents(staged, contents);
+        force(List.of(staged));
+        move(staged, file);
+        forceDirectory(file.getParentFile());
+    }
+
+    /** Finish or discard any transaction interrupted by a crash in
+     *  directory DIR.  If DIR holds a journal, the updates it lists are
+     *  completed; staged files that no journal refers to are deleted. */
+    static void recover(File dir) {
+        File journal = join(dir, "journal");
+        if (journal.isFile()) {
+            LinkedHashMap<File, File> updates = new LinkedHashMap<>();
+            for (String line : readContentsAsString(journal).split("\n")) {
+                int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    continue;
+                }
+                String staged = line.substring(0, tab);
+                File target = new File(line.substring(tab + 1));
+                if (staged.equals("-")) {
+                    updates.put(target, null);
+                } else if (new File(staged).isFile()) {
+                    updates.put(target, new File(staged));
+                }
+            }
+            apply(updates);
+            journal.delete();
+        }
+        removeStaged(dir);
+    }
+
+    /** Perform the renames and deletions in UPDATES, which maps targets to
+     *  staged files (or to null for deletions), and flush the directories
+     *  involved. */
+    private static void apply(Map<File, File> updates) {
+        LinkedHashSet<File> dirs = new LinkedHashSet<>();
+        for (Map.Entry<File, File> update : updates.entrySet()) {
+            File target = update.getKey(), staged = update.getValue();
+            if (staged == null) {
+                target.delete();
+            } else {
+                move(staged, target);
+            }
+            dirs.add(target.getParentFile());
+        }
+        for (File dir : dirs) {
+            forceDirectory(dir);
+        }
+    }
+
+    /** Delete all staged files under DIR, and the temporary files left in
+     *  the top level of object stores by interrupted writes. */
+    private static void removeStaged(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                if (file.getName().length() != 2) {
+                    removeStaged(file);
+                }
+            } else if (file.getName().endsWith(STAGED_SUFFIX)
+                       || file.getName().startsWith(ObjectStore.TEMP_PREFIX)) {
+                file.delete();
+            }
+        }
+    }
+
+    /** Atomically replace TARGET with SOURCE. */
+    private static void move(File source, File target) {
+        try {
+            Files.move(source.toPath(), target.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Flush the contents of each of FILES to disk, several at once. */
+    static void force(List<File> files) {
+        parallelMap(files, file -> {
+            try (FileChannel channel =
+                     FileChannel.open(file.toPath(),
+                                      StandardOpenOption.WRITE)) {
+                channel.force(true);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            return file;
+        });
+    }
+
+    /** Flush the entries of directory DIR to disk, where the platform
+     *  supports it. */
+    static void forceDirectory(File dir) {
+        try (FileChannel channel =
+                 FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException excp) {
+            /* Not all platforms can open or flush a directory. */
+        }
+    }
+
+    /** The journal file. */
+    private final File _journal;
+    /** Staged updates in order, mapping each target to its staged file, or
+     *  to null if it is to be deleted. */
+    private final LinkedHashMap<File, File> _updates = new LinkedHashMap<>();
+    /** Files written in place that must be flushed before committing. */
+    private final LinkedHashSet<File> _toSync = new LinkedHashSet<>();
+    /** Actions to run once the files in _toSync are on disk. */
+    private final List<Runnable> _afterSync = new ArrayList<>();
+}
@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static gitlet.Utils.*;
+
+/** Represents one directory of a commit's snapshot: a map from the names
+ *  of the files and subdirectories it contains to the UIDs of the blobs
+ *  holding those files and of the trees representing those
+ *  subdirectories.  A commit records the UID of the tree for the working
+ *  directory (its root tree), and a tree's UID is the SHA-1 hash of its
+ *  encoding, so a subdirectory that is unchanged between two commits is
+ *  represented in both by the same stored tree.
+ *
+ *  The encoding of a tree is
+ *
+ *      MAGIC (4 bytes)           "GLT" followed by the version number
+ *      entry count (4 bytes)     followed by that many entries of
+ *                                  kind (1 byte)   BLOB or TREE
+ *                                  name (as for DataOutput.writeUTF)
+ *                                  UID (20 bytes)
+ *
+ *  with entries in increasing order of name.
+ */
+class Tree implements Dumpable {
+
+    /** Current version of the binary encoding. */
+    static final int VERSION = 1;
+
+    /** The leading bytes of every encoded tree. */
+    private static final byte[] MAGIC = { 'G', 'L', 'T', VERSION };
+
+    /** Kinds of entry. */
+    static final byte BLOB = 'b', TREE = 't';
+
+    /** The tree of an empty directory, which must not be modified. */
+    static final Tree EMPTY = new Tree();
+
+    /** One entry of a tree. */
+    static class Entry {
+        /** An entry of kind KIND (BLOB or TREE) for the object with UID
+         *  ID. */
+        Entry(byte kind, ObjectId id) {
+            this.kind = kind;
+            this.id = id;
+        }
+
+        /** Returns true iff I name a subdirectory. */
+        boolean isTree() {
+            return kind == TREE;
+        }
+
+        /** BLOB or TREE. */
+        final byte kind;
+        /** The UID of my blob or tree. */
+        final ObjectId id;
+    }
+
+    /** An empty tree. */
+    Tree() {
+    }
+
+    /** Add an entry NAME of kind KIND for the object with UID ID.  It is an
+     *  error for me to have an entry NAME already. */
+    void put(String name, byte kind, ObjectId id) {
+        if (_entries.containsKey(name)) {
+            throw error("A file and a directory are both named %s.", name);
+        }
+        _entries.put(name, new Entry(kind, id));
+        _id = null;
+    }
+
+    /** Returns the entry named NAME, or null if there is none. */
+    Entry get(String name) {
+        return _entries.get(name);
+    }
+
+    /** Returns my entries, keyed and ordered by name. */
+    SortedMap<String, Entry> entries() {
+        return Collections.unmodifiableSortedMap(_entries);
+    }
+
+    /** Returns my binary encoding. */
+    byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(MAGIC);
+            out.writeInt(_entries.size());
+            for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+                out.writeByte(e.getValue().kind);
+                out.writeUTF(e.getKey());
+                e.getValue().id.write(out);
+            }
+        } catch (IOException excp) {
+            throw error("Internal error serializing tree.");
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns my UID: the SHA-1 hash of my encoding. */
+    String id() {
+        if (_id == null) {
+            _id = sha1((Object) encode());
+        }
+        return _id;
+    }
+
+    /** Returns true iff BYTES starts like an encoded tree. */
+    static boolean isEncoded(byte[] bytes) {
+        if (bytes.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length - 1; i += 1) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the tree encoded in BYTES. */
+    static Tree decode(byte[] bytes) {
+        Tree result = new Tree();
+        try (DataInputStream in =
+                 new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!isEncoded(magic) || magic[MAGIC.length - 1] != VERSION) {
+                throw new IOException("not a tree");
+            }
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                byte kind = in.readByte();
+                String name = in.readUTF();
+                result._entries.put(name,
+                                    new Entry(kind, ObjectId.read(in)));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException("corrupt tree");
+        }
+        return result;
+    }
+
+    @Override
+    public void dump() {
+        for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+            System.out.printf("%s %s %s%n",
+                              e.getValue().isTree() ? "tree" : "blob",
+                              e.getValue().id, e.getKey());
+        }
+    }
+
+    /** My entries, keyed by name. */
+    private final TreeMap<String, Entry> _entries = new TreeMap<>();
+    /** My UID, computed when first needed. */
+    private String _id;
+}
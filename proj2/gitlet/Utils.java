@@ -2,21 +2,31 @@ package gitlet;
 
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 
 /** Assorted utilities.
@@ -36,25 +46,17 @@ class Utils {
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
+        MessageDigest md = sha1Digest();
+        for (Object val : vals) {
+            if (val instanceof byte[]) {
+                md.update((byte[]) val);
+            } else if (val instanceof String) {
+                md.update(((String) val).getBytes(StandardCharsets.UTF_8));
+            } else {
+                throw new IllegalArgumentException("improper type to sha1");
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
-        } catch (NoSuchAlgorithmException excp) {
-            throw new IllegalArgumentException("System does not support SHA-1");
         }
+        return toHex(md.digest());
     }
 
     /** Returns the SHA-1 hash of the concatenation of the strings in
@@ -63,12 +65,217 @@ class Utils {
         return sha1(vals.toArray(new Object[vals.size()]));
     }
 
+    /** Files at least this many bytes long are hashed through memory-mapped
+     *  views rather than through a heap buffer. */
+    static final long MAP_THRESHOLD = 1L << 20;
+
+    /** The largest region of a file that is mapped at one time. */
+    private static final long MAP_CHUNK = 1L << 26;
+
+    /** Size of the buffer used to hash streams and small files. */
+    private static final int HASH_BUFFER_SIZE = 1 << 16;
+
+    /** Returns the SHA-1 hash of the contents of FILE, which must be a
+     *  normal file.  The result is the same as that of
+     *  sha1(readContents(FILE)), but the file is never held in memory all
+     *  at once.  Throws IllegalArgumentException in case of problems. */
+    static String sha1(File file) {
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("must be a normal file");
+        }
+        try (FileChannel channel =
+                 FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return sha1(channel);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the SHA-1 hash of the bytes of CHANNEL from its current
+     *  position to its end.  Large channels are mapped a chunk at a time,
+     *  so that the bytes are hashed straight out of the page cache. */
+    static String sha1(FileChannel channel) throws IOException {
+        MessageDigest md = sha1Digest();
+        long pos = channel.position(), size = channel.size();
+        if (size - pos >= MAP_THRESHOLD) {
+            while (pos < size) {
+                long len = Math.min(MAP_CHUNK, size - pos);
+                MappedByteBuffer map =
+                    channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                md.update(map);
+                pos += len;
+            }
+        } else {
+            ByteBuffer buf = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+            while (channel.read(buf) >= 0) {
+                buf.flip();
+                md.update(buf);
+                buf.clear();
+            }
+        }
+        return toHex(md.digest());
+    }
+
+    /** Returns the SHA-1 hash of the remaining bytes of IN, which is read
+     *  to its end but not closed.  Throws IllegalArgumentException in case
+     *  of problems. */
+    static String sha1(InputStream in) {
+        MessageDigest md = sha1Digest();
+        byte[] buf = new byte[HASH_BUFFER_SIZE];
+        try {
+            for (int n = in.read(buf); n >= 0; n = in.read(buf)) {
+                md.update(buf, 0, n);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return toHex(md.digest());
+    }
+
+    /** Returns a fresh SHA-1 MessageDigest. */
+    static MessageDigest sha1Digest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Returns DIGEST as a lower-case hexadecimal numeral. */
+    static String toHex(byte[] digest) {
+        char[] result = new char[2 * digest.length];
+        for (int i = 0; i < digest.length; i += 1) {
+            result[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            result[2 * i + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(result);
+    }
+
+    /** The hexadecimal digits, in order. */
+    private static final char[] HEX_DIGITS =
+        "0123456789abcdef".toCharArray();
+
+    /** Returns the bytes denoted by the hexadecimal numeral HEX, which
+     *  must have an even number of digits. */
+    static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("odd-length hex numeral");
+        }
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            int hi = Character.digit(hex.charAt(2 * i), 16),
+                lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("bad hex numeral: " + hex);
+            }
+            result[i] = (byte) ((hi << 4) | lo);
+        }
+        return result;
+    }
+
+    /** The length of a complete SHA-1 UID in bytes. */
+    static final int UID_BYTES = UID_LENGTH / 2;
+
+    /** Write the UID ID to OUT as UID_BYTES raw bytes. */
+    static void writeUid(DataOutput out, String id) throws IOException {
+        if (id.length() != UID_LENGTH) {
+            throw new IllegalArgumentException("malformed UID: " + id);
+        }
+        out.write(fromHex(id));
+    }
+
+    /** Read a UID written by writeUid from IN. */
+    static String readUid(DataInput in) throws IOException {
+        byte[] raw = new byte[UID_BYTES];
+        in.readFully(raw);
+        return toHex(raw);
+    }
+
+    /* PARALLEL HASHING */
+
+    /** The largest number of files read at once by parallelMap.  Hashing
+     *  is bound by I/O as much as by computation, so there is little
+     *  point in keeping more reads outstanding than this. */
+    static final int IO_PARALLELISM =
+        Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+
+    /** Lists shorter than this are processed on the calling thread. */
+    private static final int PARALLEL_THRESHOLD = 4;
+
+    /** Returns the SHA-1 hashes of the contents of FILES, which must be
+     *  normal files, in the same order, as for sha1(File).  Up to
+     *  IO_PARALLELISM files are hashed at once. */
+    static List<String> sha1All(List<File> files) {
+        return parallelMap(files, Utils::sha1);
+    }
+
+    /** Returns the results of applying FUNC to each of ITEMS, in the order
+     *  of ITEMS.  FUNC is applied to up to IO_PARALLELISM items at once, so
+     *  it must be safe to call concurrently; the result does not depend on
+     *  the order in which the calls happen.  An unchecked exception thrown
+     *  by FUNC is rethrown. */
+    static <T, R> List<R> parallelMap(List<T> items, Function<T, R> func) {
+        if (items.size() < PARALLEL_THRESHOLD || IO_PARALLELISM == 1) {
+            return items.stream().map(func).collect(Collectors.toList());
+        }
+        try {
+            return ioPool().submit(() -> items.parallelStream().map(func)
+                                   .collect(Collectors.toList())).get();
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalArgumentException(excp.getCause());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** Run each of TASKS, however few, with up to IO_PARALLELISM running
+     *  at once, and return when all have finished.  An unchecked exception
+     *  thrown by a task is rethrown. */
+    static void parallelRun(List<Runnable> tasks) {
+        if (tasks.size() < 2 || IO_PARALLELISM == 1) {
+            tasks.forEach(Runnable::run);
+            return;
+        }
+        try {
+            ioPool().submit(() -> tasks.parallelStream()
+                            .forEach(Runnable::run)).get();
+        } catch (ExecutionException excp) {
+            if (excp.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) excp.getCause();
+            }
+            throw new IllegalArgumentException(excp.getCause());
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw new IllegalArgumentException(excp);
+        }
+    }
+
+    /** Returns the pool that runs parallelMap, creating it when first
+     *  needed.  Parallel streams started from within the pool run on its
+     *  IO_PARALLELISM (daemon) workers. */
+    private static synchronized ForkJoinPool ioPool() {
+        if (_ioPool == null) {
+            _ioPool = new ForkJoinPool(IO_PARALLELISM);
+        }
+        return _ioPool;
+    }
+
+    /** The pool used by parallelMap, once created. */
+    private static ForkJoinPool _ioPool;
+
     /* FILE DELETION */
 
     /** Deletes FILE if it exists and is not a directory.  Returns true
      *  if FILE was deleted, and false otherwise.  Refuses to delete FILE
      *  and throws IllegalArgumentException unless the directory designated by
-     *  FILE also contains a directory named .gitlet. */
+     *  FILE also contains a directory named .gitlet.  Deleting removes
+     *  only the name FILE: if it is a hard link to a cached blob (see
+     *  ObjectStore.linkTo), the cached copy and any other links to it are
+     *  unaffected, even though FILE is read-only. */
     static boolean restrictedDelete(File file) {
         if (!(new File(file.getParentFile(), ".gitlet")).isDirectory()) {
             throw new IllegalArgumentException("not .gitlet working directory");
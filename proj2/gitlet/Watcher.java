@@ -0,0 +1,345 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static gitlet.Utils.*;
+
+/** A watcher of the working directory, run by the daemon when the setting
+ *  daemon.watch is true, so that status and add need not walk the whole
+ *  working directory or re-examine files that have not been touched.
+ *
+ *  A background thread takes events from a WatchService on every working
+ *  directory (but not GITLET_DIR) and keeps the set of working files up to
+ *  date.  Commands record the blob UIDs they compute for working files
+ *  (see remember); any event on a file forgets its UID, so the files
+ *  without a remembered UID are the dirty set: those that must be
+ *  examined again.
+ *
+ *  Events arrive asynchronously, so each command first synchronizes (see
+ *  sync) by creating a cookie file in GITLET_DIR, which is also watched,
+ *  and waiting for its event: inotify reports events in order, so by then
+ *  every earlier change has been seen.  If the WatchService overflows,
+ *  the cookie does not arrive in time, or a directory cannot be watched,
+ *  the watcher starts afresh with a full scan of the working directory
+ *  and forgets every UID.
+ */
+class Watcher {
+
+    /** Milliseconds to wait for a cookie before giving up on the events
+     *  and rescanning. */
+    private static final long COOKIE_TIMEOUT = 2000;
+
+    /** Prefix of the names of cookie files. */
+    private static final String COOKIE_PREFIX = "watch-cookie-";
+
+    /** Start watching the working directory, scanning it in full. */
+    static synchronized void start() {
+        if (_service != null) {
+            return;
+        }
+        rescan();
+        Thread thread = new Thread(Watcher::run, "gitlet-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Stop watching. */
+    static synchronized void stop() {
+        if (_service != null) {
+            close();
+            _service = null;
+        }
+    }
+
+    /** Returns true iff the watcher is running. */
+    static synchronized boolean running() {
+        return _service != null;
+    }
+
+    /** Bring my state up to date with every change made to the working
+     *  directory before this call, rescanning if the events cannot be
+     *  trusted.  Does nothing unless the watcher is running. */
+    static void sync() {
+        File cookie;
+        synchronized (Watcher.class) {
+            if (_service == null) {
+                return;
+            }
+            _cookies += 1;
+            cookie = join(Repository.GITLET_DIR, COOKIE_PREFIX + _cookies);
+        }
+        writeContents(cookie, "");
+        try {
+            synchronized (Watcher.class) {
+                long deadline = System.currentTimeMillis() + COOKIE_TIMEOUT;
+                while (_service != null && _cookiesSeen < _cookies
+                       && !_overflowed) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        _overflowed = true;
+                        break;
+                    }
+                    Watcher.class.wait(wait);
+                }
+                if (_service != null && _overflowed) {
+                    rescan();
+                }
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        } finally {
+            cookie.delete();
+        }
+    }
+
+    /** Returns the names of all plain files in the working directory and
+     *  its subdirectories, other than GITLET_DIR, in lexicographic order,
+     *  or null if the watcher is not running. */
+    static synchronized List<String> names() {
+        return _service == null ? null : new ArrayList<>(_names);
+    }
+
+    /** Returns the number of events seen so far, for use with
+     *  remember. */
+    static synchronized long sequence() {
+        return _sequence;
+    }
+
+    /** Returns the UID of the blob that holds the contents of working
+     *  file NAME, if it has been remembered and NAME has not been touched
+     *  since, or null otherwise. */
+    static synchronized ObjectId knownId(String name) {
+        return _service == null ? null : _ids.get(name);
+    }
+
+    /** Remember that IDS.get(k) is the UID of the blob that held the
+     *  contents of working file NAMES.get(k) when the number of events
+     *  seen was SINCE.  Files touched after that are skipped. */
+    static synchronized void remember(List<String> names,
+                                      List<ObjectId> ids, long since) {
+        if (_service == null) {
+            return;
+        }
+        for (int k = 0; k < names.size(); k += 1) {
+            Long touched = _touched.get(names.get(k));
+            if (touched == null || touched <= since) {
+                _ids.put(names.get(k), ids.get(k));
+            }
+        }
+    }
+
+    /** Take and apply events until the watcher is stopped. */
+    private static void run() {
+        while (true) {
+            WatchService service;
+            synchronized (Watcher.class) {
+                service = _service;
+            }
+            if (service == null) {
+                return;
+            }
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                continue;
+            }
+            synchronized (Watcher.class) {
+                if (service == _service) {
+                    apply(key);
+                    Watcher.class.notifyAll();
+                }
+            }
+        }
+    }
+
+    /** Apply the pending events of KEY and reset it.  A cookie event
+     *  means that every event before it is already pending on some key,
+     *  so then the events pending on all keys are applied as well. */
+    private static void apply(WatchKey key) {
+        boolean cookie = applyEvents(key);
+        if (cookie) {
+            for (WatchKey other : new ArrayList<>(_dirs.keySet())) {
+                applyEvents(other);
+            }
+        }
+        if (!key.reset() && _dirs.containsKey(key)) {
+            String prefix = _dirs.remove(key);
+            _keys.remove(prefix);
+            String name = prefix.isEmpty()
+                ? "" : prefix.substring(0, prefix.length() - 1);
+            if (name.isEmpty()
+                || Repository.workingFile(name).isDirectory()) {
+                _overflowed = true;
+            } else {
+                touch(name);
+            }
+        }
+    }
+
+    /** Apply the pending events of KEY.  Returns true iff one of them was
+     *  the creation of a cookie. */
+    private static boolean applyEvents(WatchKey key) {
+        String dir = _dirs.get(key);
+        boolean cookie = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                _overflowed = true;
+                continue;
+            }
+            String name = ((Path) event.context()).toString();
+            if (key == _cookieKey) {
+                if (name.startsWith(COOKIE_PREFIX)) {
+                    int n = Integer.parseInt(
+                        name.substring(COOKIE_PREFIX.length()));
+                    _cookiesSeen = Math.max(_cookiesSeen, n);
+                    cookie = true;
+                }
+            } else if (dir != null
+                       && !(dir.isEmpty() && name.equals(".gitlet"))) {
+                touch(dir + name);
+            }
+        }
+        return cookie;
+    }
+
+    /** Record a change to NAME, a working file or directory, which may
+     *  have been created, modified, or deleted.  A directory that is gone
+     *  takes the files and watched directories under it with it. */
+    private static void touch(String name) {
+        File file = Repository.workingFile(name);
+        _sequence += 1;
+        if (file.isDirectory() && _keys.containsKey(name + "/")) {
+            return;
+        }
+        forget(name);
+        if (file.isFile()) {
+            _names.add(name);
+            return;
+        }
+        _names.remove(name);
+        for (String sub : new ArrayList<>(
+                 _names.subSet(name + "/", name + "0"))) {
+            _names.remove(sub);
+            forget(sub);
+        }
+        for (String prefix : new ArrayList<>(
+                 _keys.subMap(name + "/", name + "0").keySet())) {
+            WatchKey key = _keys.remove(prefix);
+            _dirs.remove(key);
+            key.cancel();
+        }
+        if (file.isDirectory()) {
+            watch(file, name + "/", true);
+        }
+    }
+
+    /** Forget the UID of working file NAME. */
+    private static void forget(String name) {
+        _ids.remove(name);
+        _touched.put(name, _sequence);
+    }
+
+    /** Discard all state, and watch the working directory afresh. */
+    private static void rescan() {
+        close();
+        _names.clear();
+        _ids.clear();
+        _touched.clear();
+        _dirs.clear();
+        _keys.clear();
+        _overflowed = false;
+        try {
+            _service = FileSystems.getDefault().newWatchService();
+            _cookieKey = Repository.GITLET_DIR.toPath().register(
+                _service, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _cookiesSeen = _cookies;
+        watch(Repository.CWD, "", false);
+    }
+
+    /** Watch directory DIR, whose working files have names starting with
+     *  PREFIX, and its subdirectories other than GITLET_DIR, and add the
+     *  plain files in them to the set of working files, marking them as
+     *  touched if TOUCHED.  Each directory is watched before it is
+     *  listed, so no file added to it is missed. */
+    private static void watch(File dir, String prefix, boolean touched) {
+        try {
+            WatchKey key = dir.toPath().register(
+                _service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+            _dirs.put(key, prefix);
+            _keys.put(prefix, key);
+        } catch (IOException excp) {
+            _overflowed = true;
+            return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = prefix + file.getName();
+            if (file.isFile()) {
+                _names.add(name);
+                if (touched) {
+                    _touched.put(name, _sequence);
+                }
+            } else if (file.isDirectory()
+                       && !file.equals(Repository.GITLET_DIR)) {
+                watch(file, name + "/", touched);
+            }
+        }
+    }
+
+    /** Close my WatchService, if it is open. */
+    private static void close() {
+        if (_service != null) {
+            try {
+                _service.close();
+            } catch (IOException excp) {
+                /* Nothing more can be done with it anyway. */
+            }
+        }
+    }
+
+    /** The service watching the working directory, or null if the watcher
+     *  is not running. */
+    private static WatchService _service;
+    /** Maps the key of each watched working directory to the prefix of the
+     *  names of its files ("" for CWD, otherwise ending in "/"). */
+    private static final HashMap<WatchKey, String> _dirs = new HashMap<>();
+    /** The inverse of _dirs. */
+    private static final TreeMap<String, WatchKey> _keys = new TreeMap<>();
+    /** The key watching GITLET_DIR for cookies. */
+    private static WatchKey _cookieKey;
+    /** The names of all working files. */
+    private static final TreeSet<String> _names = new TreeSet<>();
+    /** The remembered blob UIDs of working files. */
+    private static final HashMap<String, ObjectId> _ids = new HashMap<>();
+    /** The number of events seen when each file touched since the last
+     *  scan was last touched. */
+    private static final HashMap<String, Long> _touched = new HashMap<>();
+    /** The number of events seen. */
+    private static long _sequence;
+    /** The number of cookies created, and the greatest number seen. */
+    private static int _cookies, _cookiesSeen;
+    /** True iff events may have been lost since the last scan. */
+    private static boolean _overflowed;
+}